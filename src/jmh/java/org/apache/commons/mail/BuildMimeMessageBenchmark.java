@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.internet.MimeMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the <code>MimeMessage</code> of simple and HTML emails.
+ *
+ * @since 1.4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildMimeMessageBenchmark
+{
+    /** the text of the emails */
+    private static final String TEXT = "Dear customer,\n\nyour order has been shipped.\n";
+
+    /** the HTML of the emails */
+    private static final String HTML = "<html><body><p>Dear customer,</p><p>your order has been shipped.</p></body></html>";
+
+    @Benchmark
+    public MimeMessage simpleEmail() throws EmailException
+    {
+        SimpleEmail email = new SimpleEmail();
+        init(email);
+        email.setMsg(TEXT);
+        email.buildMimeMessage();
+        return email.getMimeMessage();
+    }
+
+    @Benchmark
+    public MimeMessage htmlEmail() throws EmailException
+    {
+        HtmlEmail email = new HtmlEmail();
+        init(email);
+        email.setHtmlMsg(HTML);
+        email.setTextMsg(TEXT);
+        email.buildMimeMessage();
+        return email.getMimeMessage();
+    }
+
+    /**
+     * Set the server, sender, recipient and subject of an email.
+     *
+     * @param email the email
+     * @throws EmailException an address is invalid
+     */
+    static void init(final Email email) throws EmailException
+    {
+        email.setHostName("localhost");
+        email.setFrom("sender@example.org", "Sender");
+        email.addTo("recipient@example.org", "Recipient");
+        email.setSubject("Your order");
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.activation.DataSource;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.ByteArrayDataSource;
+
+import org.apache.commons.mail.resolver.DataSourceBaseResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rewriting the HTML of an <code>ImageHtmlEmail</code> with a
+ * number of images resolved from memory, applying an
+ * <code>ImageHtmlTemplate</code> instead, and replacing the resource
+ * locations with Content-IDs using the HTML scanner compared to the
+ * regular expressions used before 1.4.
+ *
+ * <p>The <code>scanner</code> and <code>regex</code> benchmarks only
+ * measure the rewriting of the HTML, the Content-IDs are assigned up
+ * front. <code>regex</code> reproduces the replacement done before 1.4,
+ * i.e. one pass with <code>appendReplacement</code> for the IMG and one
+ * for the SCRIPT expression, <code>scanner</code> the single pass done
+ * by <code>ImageHtmlEmail</code> now.
+ *
+ * @since 1.4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageHtmlEmailBenchmark
+{
+    /** the size of each image */
+    private static final int IMAGE_SIZE = 4096;
+
+    /** the number of images in the HTML */
+    @Param({ "1", "10", "100" })
+    private int images;
+
+    /** resolves every location to an in-memory image */
+    private DataSourceResolver resolver;
+
+    /** the HTML referencing the images */
+    private String html;
+
+    /** the HTML analyzed once */
+    private ImageHtmlTemplate template;
+
+    /** the IMG expression used before 1.4 */
+    private Pattern imgPattern;
+
+    /** the SCRIPT expression used before 1.4 */
+    private Pattern scriptPattern;
+
+    /** the Content-ID of every resource location */
+    private Map<String, String> cids;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() throws EmailException
+    {
+        final byte[] image = new byte[IMAGE_SIZE];
+
+        resolver = new DataSourceBaseResolver()
+        {
+            public DataSource resolve(final String resourceLocation) throws IOException
+            {
+                return resolve(resourceLocation, isLenient());
+            }
+
+            public DataSource resolve(final String resourceLocation, final boolean isLenient) throws IOException
+            {
+                ByteArrayDataSource ds = new ByteArrayDataSource(image, "image/png");
+                ds.setName(resourceLocation);
+                return ds;
+            }
+        };
+
+        // the SCRIPT expression used before 1.4 misses "<script src=...>" without further attributes
+        StringBuilder sb = new StringBuilder("<html><head><script type=\"text/javascript\" src=\"scripts/catalog.js\"></script></head>")
+            .append("<body><h1>Catalog</h1>");
+        for (int i = 0; i < images; i++)
+        {
+            sb.append("<p>Product ").append(i).append("<br><img alt=\"product\" src=\"images/product")
+                .append(i).append(".png\"></p>\n");
+        }
+        html = sb.append("</body></html>").toString();
+
+        template = new ImageHtmlTemplate(html, resolver);
+        imgPattern = Pattern.compile(ImageHtmlEmail.REGEX_IMG_SRC);
+        scriptPattern = Pattern.compile(ImageHtmlEmail.REGEX_SCRIPT_SRC);
+
+        cids = new HashMap<String, String>();
+        int[] locations = new HtmlResourceScanner(false).scan(html);
+        for (int i = 0; i < locations.length; i += 2)
+        {
+            cids.put(html.substring(locations[i], locations[i + 1]),
+                EmailUtils.randomAlphabetic(HtmlEmail.CID_LENGTH).toLowerCase(Locale.ENGLISH));
+        }
+
+        if (!scanner().equals(regex()))
+        {
+            throw new IllegalStateException("the scanner and the regular expressions disagree");
+        }
+    }
+
+    @Benchmark
+    public MimeMessage imageHtmlEmail() throws EmailException
+    {
+        ImageHtmlEmail email = new ImageHtmlEmail();
+        BuildMimeMessageBenchmark.init(email);
+        email.setDataSourceResolver(resolver);
+        email.setHtmlMsg(html);
+        email.buildMimeMessage();
+        return email.getMimeMessage();
+    }
+
+    @Benchmark
+    public MimeMessage imageHtmlTemplate() throws EmailException
+    {
+        HtmlEmail email = new HtmlEmail();
+        BuildMimeMessageBenchmark.init(email);
+        template.apply(email);
+        email.buildMimeMessage();
+        return email.getMimeMessage();
+    }
+
+    @Benchmark
+    public String scanner()
+    {
+        int[] locations = new HtmlResourceScanner(false).scan(html);
+
+        // collect the distinct locations to be resolved like ImageHtmlEmail does
+        Map<String, String> distinct = new LinkedHashMap<String, String>();
+        for (int i = 0; i < locations.length; i += 2)
+        {
+            String resourceLocation = html.substring(locations[i], locations[i + 1]);
+            distinct.put(resourceLocation, cids.get(resourceLocation));
+        }
+
+        StringBuilder result = new StringBuilder(html.length() + locations.length * HtmlEmail.CID_LENGTH);
+        int position = 0;
+
+        for (int i = 0; i < locations.length; i += 2)
+        {
+            String cid = distinct.get(html.substring(locations[i], locations[i + 1]));
+
+            if (cid != null)
+            {
+                result.append(html, position, locations[i]).append("cid:").append(cid);
+                position = locations[i + 1];
+            }
+        }
+
+        return result.append(html, position, html.length()).toString();
+    }
+
+    @Benchmark
+    public String regex()
+    {
+        return replacePattern(replacePattern(html, imgPattern), scriptPattern);
+    }
+
+    /**
+     * Replace the locations matched by a regular expression like
+     * <code>ImageHtmlEmail</code> did before 1.4.
+     *
+     * @param htmlMessage the HTML
+     * @param pattern the IMG or SCRIPT expression
+     * @return the HTML containing "cid" references
+     */
+    private String replacePattern(final String htmlMessage, final Pattern pattern)
+    {
+        StringBuffer stringBuffer = new StringBuffer();
+        Matcher matcher = pattern.matcher(htmlMessage);
+
+        while (matcher.find())
+        {
+            String cid = cids.get(matcher.group(2));
+
+            if (cid != null)
+            {
+                matcher.appendReplacement(stringBuffer,
+                    Matcher.quoteReplacement(matcher.group(1) + "cid:" + cid + matcher.group(3)));
+            }
+        }
+
+        matcher.appendTail(stringBuffer);
+        return stringBuffer.toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.util.ByteArrayDataSource;
+
+import org.apache.commons.mail.util.MimeMessageParser;
+import org.apache.commons.mail.util.MimeMessageUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing an HTML email with an attachment of various sizes,
+ * eagerly and lazily.
+ *
+ * @since 1.4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MimeMessageParserBenchmark
+{
+    /** the size of the attachment */
+    @Param({ "1024", "1048576" })
+    private int size;
+
+    /** the session creating the messages */
+    private Session session;
+
+    /** the raw message */
+    private byte[] message;
+
+    @Setup
+    public void setUp() throws EmailException, IOException, MessagingException
+    {
+        session = Session.getInstance(new Properties());
+        message = createMessage(size);
+    }
+
+    @Benchmark
+    public MimeMessageParser parse() throws Exception
+    {
+        return new MimeMessageParser(MimeMessageUtils.createMimeMessage(session, message)).parse();
+    }
+
+    @Benchmark
+    public MimeMessageParser parseLazily() throws Exception
+    {
+        return new MimeMessageParser(MimeMessageUtils.createMimeMessage(session, message), true).parseLazily();
+    }
+
+    /**
+     * Create an HTML email with an attachment.
+     *
+     * @param size the size of the attachment
+     * @return the raw message
+     * @throws EmailException building the message failed
+     * @throws IOException writing the message failed
+     * @throws MessagingException writing the message failed
+     */
+    static byte[] createMessage(final int size) throws EmailException, IOException, MessagingException
+    {
+        HtmlEmail email = new HtmlEmail();
+        BuildMimeMessageBenchmark.init(email);
+        email.setHtmlMsg("<html><body><p>See the attachment</p></body></html>");
+        email.setTextMsg("See the attachment");
+        email.attach(new ByteArrayDataSource(new byte[size], "application/octet-stream"), "data.bin", "data");
+        email.buildMimeMessage();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream(size * 2);
+        email.getMimeMessage().writeTo(os);
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+import javax.mail.util.ByteArrayDataSource;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures attaching content of various sizes to a
+ * <code>MultiPartEmail</code> and writing the message, which is when the
+ * attachment is encoded.
+ *
+ * @since 1.4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiPartEmailBenchmark
+{
+    /** the size of the attachment */
+    @Param({ "1024", "65536", "1048576" })
+    private int size;
+
+    /** the content of the attachment */
+    private byte[] content;
+
+    /** the attachment encoded once */
+    private EncodedAttachment encoded;
+
+    @Setup
+    public void setUp() throws EmailException
+    {
+        content = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            content[i] = (byte) i;
+        }
+        encoded = EncodedAttachment.encode(new ByteArrayDataSource(content, "application/octet-stream"));
+    }
+
+    @Benchmark
+    public MultiPartEmail attach() throws EmailException, IOException, MessagingException
+    {
+        MultiPartEmail email = new MultiPartEmail();
+        BuildMimeMessageBenchmark.init(email);
+        email.setMsg("See the attachment");
+        email.attach(new ByteArrayDataSource(content, "application/octet-stream"), "data.bin", "data");
+        return write(email);
+    }
+
+    @Benchmark
+    public MultiPartEmail attachEncoded() throws EmailException, IOException, MessagingException
+    {
+        MultiPartEmail email = new MultiPartEmail();
+        BuildMimeMessageBenchmark.init(email);
+        email.setMsg("See the attachment");
+        email.attach(encoded, "data.bin", "data", EmailAttachment.ATTACHMENT);
+        return write(email);
+    }
+
+    /**
+     * Build the message and write it to nowhere.
+     *
+     * @param email the email
+     * @return the email
+     * @throws EmailException building the message failed
+     * @throws IOException writing the message failed
+     * @throws MessagingException writing the message failed
+     */
+    private static MultiPartEmail write(final MultiPartEmail email)
+        throws EmailException, IOException, MessagingException
+    {
+        email.buildMimeMessage();
+        email.getMimeMessage().writeTo(new NullOutputStream());
+        return email;
+    }
+}
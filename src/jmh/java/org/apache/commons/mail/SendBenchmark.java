@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.subethamail.wiser.Wiser;
+
+/**
+ * Measures sending a simple email to an in-process SMTP server, with a new
+ * connection per email or using a {@link TransportPool}.
+ *
+ * @since 1.4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SendBenchmark
+{
+    /** the port of the SMTP server */
+    private static final int PORT = 2625;
+
+    /** reuse the connections */
+    @Param({ "false", "true" })
+    private boolean pooled;
+
+    /** the SMTP server */
+    private Wiser wiser;
+
+    /** the connections if pooled */
+    private TransportPool transportPool;
+
+    @Setup
+    public void setUp()
+    {
+        wiser = new Wiser();
+        wiser.setPort(PORT);
+        wiser.start();
+        transportPool = pooled ? new TransportPool() : null;
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearMessages()
+    {
+        wiser.getMessages().clear();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if (transportPool != null)
+        {
+            transportPool.close();
+        }
+        wiser.stop();
+    }
+
+    @Benchmark
+    public String send() throws EmailException
+    {
+        SimpleEmail email = new SimpleEmail();
+        BuildMimeMessageBenchmark.init(email);
+        email.setSmtpPort(PORT);
+        email.setMsg("Your order has been shipped.");
+        email.setTransportPool(transportPool);
+        return email.send();
+    }
+}
@@ -0,0 +1,555 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends large numbers of emails concurrently while limiting the number of
+ * concurrent sends per SMTP server.
+ *
+ * <p>Submitted emails are queued per SMTP server (host name and port). For
+ * every server at most the configured number of emails are sent at the same
+ * time, so a slow or throttling relay neither gets overloaded nor blocks the
+ * emails for other servers. The total number of submitted but unfinished
+ * emails is bounded; {@link #submit(Email)} blocks and {@link #trySubmit(Email)}
+ * fails while the mailer is full.
+ *
+ * <p>The sends are run on an <code>Executor</code>. By default a pool of
+ * daemon threads is used; as sending is mostly waiting for the server, an
+ * executor running each task on its own virtual thread is a good choice on
+ * Java versions providing them. If a {@link TransportPool} is supplied, it is
+ * set on every email so that connections are reused.
+ *
+ * <pre>
+ * BulkMailer mailer = new BulkMailer(10000, 10, null, new TransportPool());
+ * for (Email email : emails)
+ * {
+ *     mailer.submit(email);
+ * }
+ * mailer.shutdown();
+ * mailer.awaitTermination(1, TimeUnit.HOURS);
+ * </pre>
+ *
+ * @since 1.4
+ */
+public class BulkMailer
+{
+    /** The default maximum number of submitted but unfinished emails. */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /** The default maximum number of concurrent sends per SMTP server. */
+    public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 10;
+
+    /** runs the sends */
+    private final Executor executor;
+
+    /** the executor created by this instance, null if supplied by the caller */
+    private final ExecutorService ownedExecutor;
+
+    /** the optional pool of connected transports */
+    private final TransportPool transportPool;
+
+    /** the maximum number of concurrent sends per SMTP server */
+    private final int maxConcurrencyPerHost;
+
+    /** permits for submitting emails, provides the backpressure */
+    private final Semaphore capacity;
+
+    /** the queued emails per SMTP server, guarded by this */
+    private final Map<String, HostLane> lanes = new HashMap<String, HostLane>();
+
+    /** the number of queued emails */
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    /** the number of emails currently being sent */
+    private final AtomicLong activeCount = new AtomicLong();
+
+    /** the number of sent emails */
+    private final AtomicLong sentCount = new AtomicLong();
+
+    /** the number of failed emails */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** the number of submitted but unfinished emails, guarded by this */
+    private int pendingCount;
+
+    /** has the mailer been shut down? guarded by this */
+    private boolean shutdown;
+
+    /**
+     * Constructor using the default limits and executor, without pooling
+     * connections.
+     */
+    public BulkMailer()
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_CONCURRENCY_PER_HOST, null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of submitted but unfinished emails
+     * @param maxConcurrencyPerHost the maximum number of concurrent sends per SMTP server
+     * @param executor the executor running the sends or null to use an own thread pool
+     * @param transportPool the pool of connected transports or null to connect for every email
+     * @throws IllegalArgumentException if one of the limits is less than 1
+     */
+    public BulkMailer(int capacity, int maxConcurrencyPerHost, Executor executor, TransportPool transportPool)
+    {
+        if (capacity < 1 || maxConcurrencyPerHost < 1)
+        {
+            throw new IllegalArgumentException("mailer limits must be at least 1");
+        }
+
+        this.capacity = new Semaphore(capacity);
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+        this.transportPool = transportPool;
+
+        if (executor == null)
+        {
+            this.ownedExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+            this.executor = this.ownedExecutor;
+        }
+        else
+        {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Submit an email for sending, waiting while the mailer is full.
+     *
+     * @param email the email to send, it must not be modified afterwards
+     * @return the future message id of the email
+     * @throws InterruptedException interrupted while waiting
+     * @throws IllegalStateException if the mailer has been shut down
+     */
+    public CompletableFuture<String> submit(Email email) throws InterruptedException
+    {
+        EmailUtils.notNull(email, "no email supplied");
+        checkNotShutdown();
+        capacity.acquire();
+        return enqueue(email);
+    }
+
+    /**
+     * Submit an email for sending unless the mailer is full.
+     *
+     * @param email the email to send, it must not be modified afterwards
+     * @return the future message id of the email or null if the mailer is full
+     * @throws IllegalStateException if the mailer has been shut down
+     */
+    public CompletableFuture<String> trySubmit(Email email)
+    {
+        EmailUtils.notNull(email, "no email supplied");
+        checkNotShutdown();
+        return capacity.tryAcquire() ? enqueue(email) : null;
+    }
+
+    /**
+     * Stop accepting emails. Emails already submitted are still sent.
+     */
+    public void shutdown()
+    {
+        synchronized (this)
+        {
+            shutdown = true;
+        }
+
+        terminateIfDone();
+    }
+
+    /**
+     * Wait until all submitted emails are finished after {@link #shutdown()}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all emails are finished, false if the timeout elapsed
+     * @throws InterruptedException interrupted while waiting
+     */
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (!shutdown || pendingCount > 0)
+        {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the mailer has been shut down
+     */
+    public synchronized boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    /**
+     * @return the number of emails waiting to be sent
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return the number of emails currently being sent
+     */
+    public long getActiveCount()
+    {
+        return activeCount.get();
+    }
+
+    /**
+     * @return the number of emails sent successfully
+     */
+    public long getSentCount()
+    {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of emails which could not be sent
+     */
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    /**
+     * Queue an email for its SMTP server and start a worker for the server
+     * if its concurrency limit is not reached yet. A capacity permit has
+     * already been acquired.
+     *
+     * @param email the email to send
+     * @return the future message id of the email
+     */
+    private CompletableFuture<String> enqueue(Email email)
+    {
+        Task task = new Task(email);
+        HostLane lane;
+        boolean startWorker = false;
+
+        synchronized (this)
+        {
+            if (shutdown)
+            {
+                capacity.release();
+                throw new IllegalStateException("The mailer is already shut down");
+            }
+
+            String hostKey = getHostKey(email);
+            lane = lanes.get(hostKey);
+
+            if (lane == null)
+            {
+                lane = new HostLane(hostKey);
+                lanes.put(hostKey, lane);
+            }
+
+            lane.tasks.add(task);
+            pendingCount++;
+            queuedCount.incrementAndGet();
+
+            if (lane.workers < maxConcurrencyPerHost)
+            {
+                lane.workers++;
+                startWorker = true;
+            }
+        }
+
+        if (startWorker)
+        {
+            try
+            {
+                executor.execute(new LaneWorker(lane));
+            }
+            catch (RejectedExecutionException e)
+            {
+                List<Task> rejected = new ArrayList<Task>();
+
+                synchronized (this)
+                {
+                    lane.workers--;
+                    if (lane.tasks.remove(task))
+                    {
+                        rejected.add(task);
+                    }
+                    if (lane.workers == 0)
+                    {
+                        // no worker is left to pick up the remaining emails
+                        rejected.addAll(lane.tasks);
+                        lane.tasks.clear();
+                        lanes.remove(lane.hostKey);
+                    }
+                }
+
+                for (Task rejectedTask : rejected)
+                {
+                    queuedCount.decrementAndGet();
+                    finish(rejectedTask, null, new EmailException("Sending the email was rejected by the executor", e));
+                }
+            }
+        }
+
+        return task.future;
+    }
+
+    /**
+     * Send a single email and complete its future.
+     *
+     * @param task the task to run
+     */
+    private void send(Task task)
+    {
+        queuedCount.decrementAndGet();
+        activeCount.incrementAndGet();
+
+        String messageId = null;
+        EmailException failure = null;
+
+        try
+        {
+            if (transportPool != null)
+            {
+                task.email.setTransportPool(transportPool);
+            }
+            messageId = task.email.send();
+        }
+        catch (EmailException e)
+        {
+            failure = e;
+        }
+        catch (Throwable t)
+        {
+            failure = new EmailException(t);
+        }
+        finally
+        {
+            activeCount.decrementAndGet();
+        }
+
+        finish(task, messageId, failure);
+    }
+
+    /**
+     * Record the outcome of an email and free its capacity permit.
+     *
+     * @param task the finished task
+     * @param messageId the message id if the email was sent
+     * @param failure the failure if the email was not sent
+     */
+    private void finish(Task task, String messageId, EmailException failure)
+    {
+        if (failure == null)
+        {
+            sentCount.incrementAndGet();
+            task.future.complete(messageId);
+        }
+        else
+        {
+            failedCount.incrementAndGet();
+            task.future.completeExceptionally(failure);
+        }
+
+        synchronized (this)
+        {
+            pendingCount--;
+            notifyAll();
+        }
+
+        capacity.release();
+        terminateIfDone();
+    }
+
+    /**
+     * Shut down the own executor once the mailer is shut down and all
+     * emails are finished.
+     */
+    private void terminateIfDone()
+    {
+        boolean done;
+
+        synchronized (this)
+        {
+            done = shutdown && pendingCount == 0;
+            if (done)
+            {
+                notifyAll();
+            }
+        }
+
+        if (done && ownedExecutor != null)
+        {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the mailer has been shut down
+     */
+    private synchronized void checkNotShutdown()
+    {
+        if (shutdown)
+        {
+            throw new IllegalStateException("The mailer is already shut down");
+        }
+    }
+
+    /**
+     * Determine the SMTP server an email is sent to.
+     *
+     * @param email the email
+     * @return host name and port of the SMTP server
+     */
+    private static String getHostKey(Email email)
+    {
+        String port = email.isSSLOnConnect() ? email.getSslSmtpPort() : email.getSmtpPort();
+        return email.getHostName() + ":" + port;
+    }
+
+    /**
+     * Sends the queued emails of one SMTP server until there are none left.
+     */
+    private final class LaneWorker implements Runnable
+    {
+        /** the lane to drain */
+        private final HostLane lane;
+
+        /**
+         * Constructor.
+         *
+         * @param lane the lane to drain
+         */
+        LaneWorker(HostLane lane)
+        {
+            this.lane = lane;
+        }
+
+        public void run()
+        {
+            while (true)
+            {
+                Task task;
+
+                synchronized (BulkMailer.this)
+                {
+                    task = lane.tasks.poll();
+
+                    if (task == null)
+                    {
+                        lane.workers--;
+                        if (lane.workers == 0)
+                        {
+                            lanes.remove(lane.hostKey);
+                        }
+                        return;
+                    }
+                }
+
+                send(task);
+            }
+        }
+    }
+
+    /**
+     * The queue and the number of workers of one SMTP server.
+     */
+    private static final class HostLane
+    {
+        /** host name and port of the SMTP server */
+        private final String hostKey;
+
+        /** the queued emails */
+        private final LinkedList<Task> tasks = new LinkedList<Task>();
+
+        /** the number of running workers */
+        private int workers;
+
+        /**
+         * Constructor.
+         *
+         * @param hostKey host name and port of the SMTP server
+         */
+        HostLane(String hostKey)
+        {
+            this.hostKey = hostKey;
+        }
+    }
+
+    /**
+     * A submitted email together with its future.
+     */
+    private static final class Task
+    {
+        /** the email to send */
+        private final Email email;
+
+        /** the future message id */
+        private final CompletableFuture<String> future = new CompletableFuture<String>();
+
+        /**
+         * Constructor.
+         *
+         * @param email the email to send
+         */
+        Task(Email email)
+        {
+            this.email = email;
+        }
+    }
+
+    /**
+     * Creates the daemon threads of the own executor.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory
+    {
+        /** the number of created threads */
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "commons-email-bulk-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
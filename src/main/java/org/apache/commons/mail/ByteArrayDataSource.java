@@ -40,7 +40,8 @@ import javax.activation.DataSource;
  *
  * @since 1.0
  * @version $Id: ByteArrayDataSource.java 1459997 2013-03-22 21:23:15Z tn $
- * @deprecated since 1.4, use {@link javax.mail.util.ByteArrayDataSource} instead
+ * @deprecated since 1.4, use {@link javax.mail.util.ByteArrayDataSource} or
+ *  {@link StreamingDataSource} instead
  */
 @Deprecated
 public class ByteArrayDataSource implements DataSource
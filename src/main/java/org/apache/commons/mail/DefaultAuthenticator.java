@@ -56,4 +56,56 @@ public class DefaultAuthenticator extends Authenticator
     {
         return this.authentication;
     }
+
+    /**
+     * Two authenticators are equal if they are of the same class and provide
+     * the same user name and password, a subclass might supply different
+     * credentials. This allows pooled connections and cached sessions to be
+     * shared between emails using identical credentials.
+     *
+     * @param obj the object to compare with
+     * @return true if the other object is of the same class with the same credentials
+     * @since 1.4
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        PasswordAuthentication that = ((DefaultAuthenticator) obj).authentication;
+
+        return equals(this.authentication.getUserName(), that.getUserName())
+            && equals(this.authentication.getPassword(), that.getPassword());
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the hash code of the user name
+     * @since 1.4
+     */
+    @Override
+    public int hashCode()
+    {
+        String userName = this.authentication.getUserName();
+        return userName != null ? userName.hashCode() : 0;
+    }
+
+    /**
+     * Null-safe comparison of two strings.
+     *
+     * @param s1 the first string
+     * @param s2 the second string
+     * @return true if both strings are null or equal
+     */
+    private static boolean equals(String s1, String s2)
+    {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
 }
@@ -25,10 +25,21 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Address;
 import javax.mail.Authenticator;
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Store;
 import javax.mail.Transport;
@@ -324,6 +335,18 @@ public abstract class Email
     /** The Session to mail with. */
     private Session session;
 
+    /** The optional cache of sessions shared with other emails. */
+    private SessionCache sessionCache;
+
+    /** The optional pool of connected transports used for sending. */
+    private TransportPool transportPool;
+
+    /** The optional listener receiving the timings of building and sending. */
+    private EmailMetricsListener metricsListener;
+
+    /** The optional listener receiving the trace of sending. */
+    private SmtpTraceListener smtpTraceListener;
+
     /**
      * Setting to true will enable the display of debug information.
      *
@@ -623,15 +646,25 @@ public abstract class Email
      * @since 1.0
      */
     public Session getMailSession() throws EmailException
+    {
+        return this.getMailSession(this.transportPool != null ? this.transportPool.getSessionCache() : null);
+    }
+
+    /**
+     * Determines the mail session, sharing a newly created session through
+     * the given cache if this email has no session cache of its own.
+     *
+     * @param defaultCache the cache to use without a session cache or null
+     * @return A Session.
+     * @throws EmailException if the host name was not set
+     */
+    Session getMailSession(SessionCache defaultCache) throws EmailException
     {
         if (this.session == null)
         {
-            Properties properties = new Properties(System.getProperties());
-            properties.setProperty(MAIL_TRANSPORT_PROTOCOL, SMTP);
-
             if (EmailUtils.isEmpty(this.hostName))
             {
-                this.hostName = properties.getProperty(MAIL_HOST);
+                this.hostName = System.getProperty(MAIL_HOST);
             }
 
             if (EmailUtils.isEmpty(this.hostName))
@@ -639,58 +672,113 @@ public abstract class Email
                 throw new EmailException("Cannot find valid hostname for mail session");
             }
 
-            properties.setProperty(MAIL_PORT, this.smtpPort);
-            properties.setProperty(MAIL_HOST, this.hostName);
-            properties.setProperty(MAIL_DEBUG, String.valueOf(this.debug));
-
-            properties.setProperty(EmailConstants.MAIL_TRANSPORT_STARTTLS_ENABLE,
-                    isStartTLSEnabled() ? "true" : "false");
-            properties.setProperty(EmailConstants.MAIL_TRANSPORT_STARTTLS_REQUIRED,
-                    isStartTLSRequired() ? "true" : "false");
+            long start = this.startPhase();
 
-            properties.setProperty(EmailConstants.MAIL_SMTP_SEND_PARTIAL,
-                    isSendPartial() ? "true" : "false");
-            properties.setProperty(EmailConstants.MAIL_SMTPS_SEND_PARTIAL,
-                    isSendPartial() ? "true" : "false");
+            SessionCache cache = this.sessionCache != null ? this.sessionCache : defaultCache;
 
-            if (this.authenticator != null)
+            if (cache != null)
             {
-                properties.setProperty(MAIL_SMTP_AUTH, "true");
+                SessionKey key = this.createSessionKey();
+                Session cachedSession = cache.get(key);
+                this.session = cachedSession != null
+                    ? cachedSession : cache.put(key, this.createMailSession());
             }
-
-            if (isSSLOnConnect())
+            else
             {
-                properties.setProperty(MAIL_PORT, this.sslSmtpPort);
-                properties.setProperty(MAIL_SMTP_SOCKET_FACTORY_PORT, this.sslSmtpPort);
-                properties.setProperty(MAIL_SMTP_SOCKET_FACTORY_CLASS, "javax.net.ssl.SSLSocketFactory");
-                properties.setProperty(MAIL_SMTP_SOCKET_FACTORY_FALLBACK, "false");
+                this.session = this.createMailSession();
             }
 
-            if ((isSSLOnConnect() || isStartTLSEnabled()) && isSSLCheckServerIdentity())
-            {
-                properties.setProperty(EmailConstants.MAIL_SMTP_SSL_CHECKSERVERIDENTITY, "true");
-            }
+            this.endPhase(EmailMetricsListener.Phase.SESSION, start);
+        }
+        return this.session;
+    }
 
-            if (this.bounceAddress != null)
-            {
-                properties.setProperty(MAIL_SMTP_FROM, this.bounceAddress);
-            }
+    /**
+     * Creates a new mail session from the session related settings of
+     * this email. The host name has already been determined.
+     *
+     * @return A Session.
+     */
+    private Session createMailSession()
+    {
+        Properties properties = new Properties(System.getProperties());
+        properties.setProperty(MAIL_TRANSPORT_PROTOCOL, SMTP);
 
-            if (this.socketTimeout > 0)
-            {
-                properties.setProperty(MAIL_SMTP_TIMEOUT, Integer.toString(this.socketTimeout));
-            }
+        properties.setProperty(MAIL_PORT, this.smtpPort);
+        properties.setProperty(MAIL_HOST, this.hostName);
+        properties.setProperty(MAIL_DEBUG, String.valueOf(this.debug));
 
-            if (this.socketConnectionTimeout > 0)
-            {
-                properties.setProperty(MAIL_SMTP_CONNECTIONTIMEOUT, Integer.toString(this.socketConnectionTimeout));
-            }
+        properties.setProperty(EmailConstants.MAIL_TRANSPORT_STARTTLS_ENABLE,
+                isStartTLSEnabled() ? "true" : "false");
+        properties.setProperty(EmailConstants.MAIL_TRANSPORT_STARTTLS_REQUIRED,
+                isStartTLSRequired() ? "true" : "false");
+
+        properties.setProperty(EmailConstants.MAIL_SMTP_SEND_PARTIAL,
+                isSendPartial() ? "true" : "false");
+        properties.setProperty(EmailConstants.MAIL_SMTPS_SEND_PARTIAL,
+                isSendPartial() ? "true" : "false");
 
-            // changed this (back) to getInstance due to security exceptions
-            // caused when testing using maven
-            this.session = Session.getInstance(properties, this.authenticator);
+        if (this.authenticator != null)
+        {
+            properties.setProperty(MAIL_SMTP_AUTH, "true");
         }
-        return this.session;
+
+        if (isSSLOnConnect())
+        {
+            properties.setProperty(MAIL_PORT, this.sslSmtpPort);
+            properties.setProperty(MAIL_SMTP_SOCKET_FACTORY_PORT, this.sslSmtpPort);
+            properties.setProperty(MAIL_SMTP_SOCKET_FACTORY_CLASS, "javax.net.ssl.SSLSocketFactory");
+            properties.setProperty(MAIL_SMTP_SOCKET_FACTORY_FALLBACK, "false");
+        }
+
+        if ((isSSLOnConnect() || isStartTLSEnabled()) && isSSLCheckServerIdentity())
+        {
+            properties.setProperty(EmailConstants.MAIL_SMTP_SSL_CHECKSERVERIDENTITY, "true");
+        }
+
+        if (this.bounceAddress != null)
+        {
+            properties.setProperty(MAIL_SMTP_FROM, this.bounceAddress);
+        }
+
+        if (this.socketTimeout > 0)
+        {
+            properties.setProperty(MAIL_SMTP_TIMEOUT, Integer.toString(this.socketTimeout));
+        }
+
+        if (this.socketConnectionTimeout > 0)
+        {
+            properties.setProperty(MAIL_SMTP_CONNECTIONTIMEOUT, Integer.toString(this.socketConnectionTimeout));
+        }
+
+        // changed this (back) to getInstance due to security exceptions
+        // caused when testing using maven
+        return Session.getInstance(properties, this.authenticator);
+    }
+
+    /**
+     * Creates the fingerprint of all settings used by {@link #createMailSession()}.
+     *
+     * @return the session key
+     */
+    private SessionKey createSessionKey()
+    {
+        String[] values = {
+            this.hostName,
+            this.smtpPort,
+            this.sslSmtpPort,
+            String.valueOf(this.debug),
+            String.valueOf(isStartTLSEnabled()),
+            String.valueOf(isStartTLSRequired()),
+            String.valueOf(isSSLOnConnect()),
+            String.valueOf(isSSLCheckServerIdentity()),
+            String.valueOf(isSendPartial()),
+            this.bounceAddress,
+            String.valueOf(this.socketTimeout),
+            String.valueOf(this.socketConnectionTimeout)
+        };
+
+        return new SessionKey(values, this.authenticator);
     }
 
     /**
@@ -1265,7 +1353,10 @@ public abstract class Email
 
         try
         {
-            this.message = this.createMimeMessage(this.getMailSession());
+            Session mailSession = this.getMailSession();
+            long start = this.startPhase();
+
+            this.message = this.createMimeMessage(mailSession);
 
             if (EmailUtils.isNotEmpty(this.subject))
             {
@@ -1312,6 +1403,8 @@ public abstract class Email
                 this.message.setText("");
             }
 
+            start = this.endPhase(EmailMetricsListener.Phase.CONTENT, start);
+
             if (this.fromAddress != null)
             {
                 this.message.setFrom(this.fromAddress);
@@ -1356,6 +1449,7 @@ public abstract class Email
                     this.toInternetAddressArray(this.replyList));
             }
 
+            start = this.endPhase(EmailMetricsListener.Phase.ADDRESSES, start);
 
             if (this.headers.size() > 0)
             {
@@ -1371,6 +1465,8 @@ public abstract class Email
                 this.message.setSentDate(getSentDate());
             }
 
+            this.endPhase(EmailMetricsListener.Phase.HEADERS, start);
+
             if (this.popBeforeSmtp)
             {
                 Store store = session.getStore("pop3");
@@ -1392,22 +1488,167 @@ public abstract class Email
      */
     public String sendMimeMessage()
        throws EmailException
+    {
+        return this.sendMimeMessage(this.smtpTraceListener != null ? new SmtpTrace() : null);
+    }
+
+    /**
+     * Sends the previously created MimeMessage to the SMTP server and
+     * reports the trace to the trace listener.
+     *
+     * @param trace the trace to record or null if there is no trace listener
+     * @return the message id of the underlying MimeMessage
+     * @throws EmailException the sending failed
+     */
+    private String sendMimeMessage(SmtpTrace trace)
+       throws EmailException
     {
         EmailUtils.notNull(this.message, "MimeMessage has not been created yet");
 
+        long start = this.startPhase();
+        Throwable failure = null;
+
         try
         {
-            Transport.send(this.message);
+            if (this.transportPool != null)
+            {
+                this.sendPooledMimeMessage(trace);
+            }
+            else if (this.metricsListener != null || trace != null)
+            {
+                this.sendMeteredMimeMessage(trace);
+            }
+            else
+            {
+                Transport.send(this.message);
+            }
+
+            this.reportSent(System.nanoTime() - start);
+
             return this.message.getMessageID();
         }
         catch (Throwable t)
         {
+            failure = t;
+
             String msg = "Sending the email to the following server failed : "
                 + this.getHostName()
                 + ":"
                 + this.getSmtpPort();
 
-            throw new EmailException(msg, t);
+            EmailException e = new EmailException(msg, t);
+            this.reportFailed(t, System.nanoTime() - start, e);
+            throw e;
+        }
+        finally
+        {
+            if (trace != null)
+            {
+                trace.finish(failure);
+                this.reportTrace(trace);
+            }
+        }
+    }
+
+    /**
+     * Sends the previously created MimeMessage over a transport taken
+     * from the transport pool. The transport is returned to the pool
+     * after a successful send and discarded otherwise.
+     *
+     * @param trace the trace to record or null
+     * @throws EmailException determining the mail session failed
+     * @throws MessagingException the sending failed
+     */
+    private void sendPooledMimeMessage(SmtpTrace trace)
+        throws EmailException, MessagingException
+    {
+        this.saveChanges(trace);
+
+        long start = this.startPhase();
+        Transport transport = this.transportPool.borrow(this.getMailSession(), trace);
+        boolean sent = false;
+
+        start = this.endPhase(EmailMetricsListener.Phase.CONNECT, start);
+
+        try
+        {
+            transport.sendMessage(this.message, this.message.getAllRecipients());
+            sent = true;
+            this.endPhase(EmailMetricsListener.Phase.DATA, start);
+        }
+        finally
+        {
+            TracingSMTPTransport.attach(transport, null);
+
+            if (sent)
+            {
+                this.transportPool.release(transport);
+            }
+            else
+            {
+                this.transportPool.invalidate(transport);
+            }
+        }
+    }
+
+    /**
+     * Sends the previously created MimeMessage like
+     * <code>Transport.send()</code> does, but measuring the connect and
+     * data phases separately and tracing the SMTP exchange.
+     *
+     * @param trace the trace to record or null
+     * @throws MessagingException the sending failed
+     */
+    private void sendMeteredMimeMessage(SmtpTrace trace)
+        throws MessagingException
+    {
+        this.saveChanges(trace);
+
+        Address[] recipients = this.message.getAllRecipients();
+
+        if (recipients == null || recipients.length == 0)
+        {
+            // like Transport.send()
+            throw new SendFailedException("No recipient addresses");
+        }
+
+        Transport transport = trace != null
+            ? TracingSMTPTransport.create(this.session, recipients[0])
+            : this.session.getTransport(recipients[0]);
+        TracingSMTPTransport.attach(transport, trace);
+        long start = this.startPhase();
+
+        try
+        {
+            transport.connect();
+            start = this.endPhase(EmailMetricsListener.Phase.CONNECT, start);
+
+            transport.sendMessage(this.message, recipients);
+            this.endPhase(EmailMetricsListener.Phase.DATA, start);
+        }
+        finally
+        {
+            transport.close();
+        }
+    }
+
+    /**
+     * Updates the headers of the message before sending it.
+     *
+     * @param trace the trace to record the time in or null
+     * @throws MessagingException updating the headers failed
+     */
+    private void saveChanges(SmtpTrace trace)
+        throws MessagingException
+    {
+        long start = trace != null ? System.nanoTime() : 0L;
+
+        // Transport.send() does this implicitly
+        this.message.saveChanges();
+
+        if (trace != null)
+        {
+            trace.addStep("PREPARE", null, start, -1);
         }
     }
 
@@ -1433,8 +1674,97 @@ public abstract class Email
      */
     public String send() throws EmailException
     {
-        this.buildMimeMessage();
-        return this.sendMimeMessage();
+        if (this.smtpTraceListener == null)
+        {
+            this.buildMimeMessage();
+            return this.sendMimeMessage();
+        }
+
+        SmtpTrace trace = new SmtpTrace();
+        long start = System.nanoTime();
+
+        try
+        {
+            this.buildMimeMessage();
+        }
+        catch (EmailException e)
+        {
+            trace.finish(e);
+            this.reportTrace(trace);
+            throw e;
+        }
+
+        trace.addStep("BUILD", null, start, -1);
+        return this.sendMimeMessage(trace);
+    }
+
+    /**
+     * Sends the email in the background using a shared executor with a
+     * bounded number of daemon threads. See {@link #sendAsync(Executor)}.
+     * <p>
+     * At most 1024 emails wait for a free thread. Once that many are
+     * waiting, further emails are not queued and the returned future is
+     * completed exceptionally with an {@link EmailException} right away,
+     * so callers sending faster than the servers accept emails notice it
+     * instead of filling the memory. Pass an executor to
+     * {@link #sendAsync(Executor)} for a different policy.
+     *
+     * @return the future message id of the underlying MimeMessage
+     * @since 1.4
+     */
+    public CompletableFuture<String> sendAsync()
+    {
+        return this.sendAsync(AsyncSendExecutor.INSTANCE);
+    }
+
+    /**
+     * Sends the email in the background using the given executor. Building
+     * and sending the MimeMessage both happen on the executor, therefore
+     * the email must not be modified until the returned future is done.
+     * Failures complete the future exceptionally with an {@link EmailException}.
+     * <p>
+     * As sending an email mostly consists of waiting for the SMTP server,
+     * an executor running each task on its own (virtual) thread is a good fit
+     * for a large number of concurrent sends.
+     *
+     * @param executor the executor to send the email with
+     * @return the future message id of the underlying MimeMessage
+     * @throws IllegalArgumentException if the executor is {@code null}
+     * @since 1.4
+     */
+    public CompletableFuture<String> sendAsync(Executor executor)
+    {
+        EmailUtils.notNull(executor, "no executor supplied");
+
+        final CompletableFuture<String> result = new CompletableFuture<String>();
+
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        result.complete(send());
+                    }
+                    catch (EmailException e)
+                    {
+                        result.completeExceptionally(e);
+                    }
+                    catch (Throwable t)
+                    {
+                        result.completeExceptionally(new EmailException(t));
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            result.completeExceptionally(new EmailException("Sending the email was rejected by the executor", e));
+        }
+
+        return result;
     }
 
     /**
@@ -1732,6 +2062,223 @@ public abstract class Email
         return this;
     }
 
+    /**
+     * Get the cache of sessions shared with other emails.
+     *
+     * @return the session cache or null if this email creates its own session
+     * @since 1.4
+     */
+    public SessionCache getSessionCache()
+    {
+        return this.sessionCache;
+    }
+
+    /**
+     * Sets a cache of sessions shared with other emails. When the mail session
+     * is created, an existing session with identical settings is taken from
+     * the cache instead. Sessions supplied by {@link #setMailSession(Session)}
+     * are not cached.
+     *
+     * @param sessionCache the session cache or null to disable caching
+     * @return An Email.
+     * @throws IllegalStateException if the mail session is already initialized
+     * @since 1.4
+     */
+    public Email setSessionCache(SessionCache sessionCache)
+    {
+        checkSessionAlreadyInitialized();
+        this.sessionCache = sessionCache;
+        return this;
+    }
+
+    /**
+     * Get the pool of connected transports used for sending.
+     *
+     * @return the transport pool or null if every send opens its own connection
+     * @since 1.4
+     */
+    public TransportPool getTransportPool()
+    {
+        return this.transportPool;
+    }
+
+    /**
+     * Sets a pool of connected transports used for sending. Without a pool
+     * every call to {@link #send()} opens and closes its own connection to
+     * the SMTP server. The same pool is usually shared by many emails.
+     * Connections are only shared by emails using the same mail session,
+     * so unless a session cache is set, the mail session created by this
+     * email is shared through the session cache of the pool. Set the pool
+     * before the mail session is created.
+     *
+     * @param transportPool the transport pool or null to disable pooling
+     * @return An Email.
+     * @since 1.4
+     */
+    public Email setTransportPool(TransportPool transportPool)
+    {
+        this.transportPool = transportPool;
+        return this;
+    }
+
+    /**
+     * Get the listener receiving the timings of building and sending.
+     *
+     * @return the metrics listener or null if nothing is measured
+     * @since 1.4
+     */
+    public EmailMetricsListener getMetricsListener()
+    {
+        return this.metricsListener;
+    }
+
+    /**
+     * Sets a listener receiving the timings of building and sending this
+     * email. Without a listener nothing is measured. The same listener is
+     * usually shared by many emails.
+     *
+     * @param metricsListener the metrics listener or null to disable measuring
+     * @return An Email.
+     * @since 1.4
+     */
+    public Email setMetricsListener(EmailMetricsListener metricsListener)
+    {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * Get the listener receiving the trace of sending.
+     *
+     * @return the trace listener or null if sending is not traced
+     * @since 1.4
+     */
+    public SmtpTraceListener getSmtpTraceListener()
+    {
+        return this.smtpTraceListener;
+    }
+
+    /**
+     * Sets a listener receiving an {@link SmtpTrace} with the timing
+     * breakdown of building this email and of the SMTP exchange whenever
+     * it is sent. Unlike {@link #setDebug(boolean)} the trace is a
+     * structured object which can be logged or exported. The same listener
+     * is usually shared by many emails.
+     *
+     * @param smtpTraceListener the trace listener or null to disable tracing
+     * @return An Email.
+     * @since 1.4
+     */
+    public Email setSmtpTraceListener(SmtpTraceListener smtpTraceListener)
+    {
+        this.smtpTraceListener = smtpTraceListener;
+        return this;
+    }
+
+    /**
+     * Get the start time of a phase.
+     *
+     * @return the current time in nanoseconds or 0 if no metrics listener is set
+     */
+    long startPhase()
+    {
+        return this.metricsListener != null ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Report a completed phase to the metrics listener, if any.
+     *
+     * @param phase the phase
+     * @param start the start time of the phase, see {@link #startPhase()}
+     * @return the start time of the next phase
+     */
+    long endPhase(EmailMetricsListener.Phase phase, long start)
+    {
+        if (this.metricsListener == null)
+        {
+            return 0L;
+        }
+
+        long now = System.nanoTime();
+
+        try
+        {
+            this.metricsListener.phaseCompleted(this, phase, now - start);
+        }
+        catch (RuntimeException e)
+        {
+            // a failing listener must not change the outcome of building or sending
+        }
+
+        return now;
+    }
+
+    /**
+     * Report a sent email to the metrics listener, if any. Exceptions
+     * thrown by the listener are ignored as the email was delivered.
+     *
+     * @param nanos the duration of sending in nanoseconds
+     */
+    void reportSent(long nanos)
+    {
+        if (this.metricsListener != null)
+        {
+            long size = this.message instanceof MeteredMimeMessage
+                ? ((MeteredMimeMessage) this.message).getWrittenSize() : -1;
+
+            try
+            {
+                this.metricsListener.messageSent(this, size, nanos);
+            }
+            catch (RuntimeException e)
+            {
+                // the email was delivered regardless
+            }
+        }
+    }
+
+    /**
+     * Report a failed send to the metrics listener, if any. An exception
+     * thrown by the listener is added as suppressed exception to the
+     * exception reported to the caller instead of replacing it.
+     *
+     * @param cause the failure
+     * @param nanos the duration until the failure in nanoseconds
+     * @param reported the exception reported to the caller
+     */
+    void reportFailed(Throwable cause, long nanos, EmailException reported)
+    {
+        if (this.metricsListener != null)
+        {
+            try
+            {
+                this.metricsListener.sendFailed(this, cause, nanos);
+            }
+            catch (RuntimeException e)
+            {
+                reported.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Pass a finished trace to the trace listener. Exceptions thrown by the
+     * listener are ignored so they do not change the outcome of sending.
+     *
+     * @param trace the finished trace
+     */
+    void reportTrace(SmtpTrace trace)
+    {
+        try
+        {
+            this.smtpTraceListener.traced(this, trace);
+        }
+        catch (RuntimeException e)
+        {
+            // the outcome of sending is reported to the caller regardless
+        }
+    }
+
     /**
      * Get the list of "To" addresses.
      *
@@ -1829,7 +2376,8 @@ public abstract class Email
      */
     protected MimeMessage createMimeMessage(Session aSession)
     {
-        return new MimeMessage(aSession);
+        // the metered message reports its size to the metrics listener
+        return this.metricsListener != null ? new MeteredMimeMessage(aSession) : new MimeMessage(aSession);
     }
 
     /**
@@ -1915,6 +2463,50 @@ public abstract class Email
         return address;
     }
 
+    /**
+     * Holder of the executor used by {@link #sendAsync()}, the threads are
+     * only created when the first email is sent asynchronously.
+     */
+    private static final class AsyncSendExecutor
+    {
+        /** the maximum number of threads, sending is mostly waiting for the server */
+        private static final int MAX_THREADS = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+        /** the maximum number of emails waiting for a thread */
+        private static final int MAX_QUEUED = 1024;
+
+        /** the idle time in seconds after which a thread is terminated */
+        private static final long KEEP_ALIVE_SECONDS = 60L;
+
+        /** the shared executor */
+        static final ExecutorService INSTANCE = createExecutor();
+
+        /**
+         * Creates a bounded thread pool with daemon threads which terminate when idle.
+         * The queue is bounded as well, tasks submitted while it is full are rejected.
+         *
+         * @return the executor
+         */
+        private static ExecutorService createExecutor()
+        {
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED),
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, "commons-email-send-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
     /**
      * When a mail session is already initialized setting the
      * session properties has no effect. In order to flag the
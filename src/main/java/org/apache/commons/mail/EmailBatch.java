@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends many emails over as few SMTP connections as possible.
+ *
+ * <p>All emails are built first and grouped by their mail session. Emails
+ * creating their own session share it through the session cache of the
+ * transport pool, see {@link TransportPool}. Each group is then sent over
+ * a single connected
+ * <code>Transport</code>. In contrast to {@link Email#send()}, a failing
+ * email does not abort the batch; instead a {@link Result} is returned for
+ * every email containing either the message id or the failure. The metrics
+ * and trace listeners of the emails are notified as when sending them alone.
+ *
+ * <pre>
+ * EmailBatch batch = new EmailBatch();
+ * for (EmailBatch.Result result : batch.sendAll(emails))
+ * {
+ *     if (!result.isSuccess())
+ *     {
+ *         // handle result.getException()
+ *     }
+ * }
+ * </pre>
+ *
+ * @since 1.4
+ */
+public class EmailBatch
+{
+    /** the pool providing the connected transports */
+    private final TransportPool transportPool;
+
+    /** was the pool created by this instance? */
+    private final boolean ownsPool;
+
+    /**
+     * Constructor. Connections are opened for every call to
+     * {@link #sendAll(Collection)} and closed afterwards.
+     */
+    public EmailBatch()
+    {
+        this.transportPool = null;
+        this.ownsPool = true;
+    }
+
+    /**
+     * Constructor. Connections are taken from and returned to the given pool
+     * so that they survive between batches.
+     *
+     * @param transportPool the pool providing the connected transports
+     * @throws IllegalArgumentException if the pool is {@code null}
+     */
+    public EmailBatch(final TransportPool transportPool)
+    {
+        EmailUtils.notNull(transportPool, "no transport pool supplied");
+        this.transportPool = transportPool;
+        this.ownsPool = false;
+    }
+
+    /**
+     * Builds and sends all emails. The emails must not have been built
+     * before.
+     *
+     * @param emails the emails to send
+     * @return the results in the iteration order of the emails
+     */
+    public List<Result> sendAll(final Collection<? extends Email> emails)
+    {
+        List<Result> results = new ArrayList<Result>(emails.size());
+        Map<Session, List<Result>> groups = new LinkedHashMap<Session, List<Result>>();
+        TransportPool pool = ownsPool ? new TransportPool(1, TransportPool.DEFAULT_MAX_IDLE_TIME_MS) : transportPool;
+
+        for (Email email : emails)
+        {
+            Result result = new Result(email);
+            results.add(result);
+
+            try
+            {
+                Session session = email.getMailSession(pool.getSessionCache());
+                email.buildMimeMessage();
+                email.getMimeMessage().saveChanges();
+
+                List<Result> group = groups.get(session);
+
+                if (group == null)
+                {
+                    group = new ArrayList<Result>();
+                    groups.put(session, group);
+                }
+
+                group.add(result);
+            }
+            catch (Exception e)
+            {
+                result.setException(new EmailException("Building the MimeMessage failed", e));
+            }
+        }
+
+        try
+        {
+            for (List<Result> group : groups.values())
+            {
+                sendGroup(pool, group);
+            }
+        }
+        finally
+        {
+            if (ownsPool)
+            {
+                pool.close();
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Sends a group of emails sharing the same mail session over one
+     * transport. The transport is only replaced if it lost its connection.
+     * Like {@link Email#send()}, every email reports to its metrics and
+     * trace listeners; the connect phase is only reported by the email
+     * which opened or borrowed the transport.
+     *
+     * @param pool the pool providing the transport
+     * @param group the results of the emails to send
+     */
+    private void sendGroup(final TransportPool pool, final List<Result> group)
+    {
+        Transport transport = null;
+
+        try
+        {
+            for (Result result : group)
+            {
+                Email email = result.getEmail();
+                MimeMessage message = email.getMimeMessage();
+                SmtpTrace trace = email.getSmtpTraceListener() != null ? new SmtpTrace() : null;
+                long start = email.startPhase();
+                long phaseStart = start;
+                Throwable failure = null;
+
+                try
+                {
+                    if (transport == null)
+                    {
+                        transport = pool.borrow(email.getMailSession(), trace);
+                        phaseStart = email.endPhase(EmailMetricsListener.Phase.CONNECT, phaseStart);
+                    }
+                    else
+                    {
+                        TracingSMTPTransport.attach(transport, trace);
+                    }
+
+                    transport.sendMessage(message, message.getAllRecipients());
+                    email.endPhase(EmailMetricsListener.Phase.DATA, phaseStart);
+                    email.reportSent(System.nanoTime() - start);
+                    result.setMessageId(message.getMessageID());
+                }
+                catch (Exception e)
+                {
+                    failure = e;
+
+                    EmailException exception = new EmailException("Sending the email to the following server failed : "
+                        + email.getHostName() + ":" + email.getSmtpPort(), e);
+                    email.reportFailed(e, System.nanoTime() - start, exception);
+                    result.setException(exception);
+
+                    // rejected recipients leave the connection usable, anything else does not
+                    if (transport != null && !transport.isConnected())
+                    {
+                        pool.invalidate(transport);
+                        transport = null;
+                    }
+                }
+                finally
+                {
+                    if (transport != null)
+                    {
+                        TracingSMTPTransport.attach(transport, null);
+                    }
+                    if (trace != null)
+                    {
+                        trace.finish(failure);
+                        email.reportTrace(trace);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if (transport != null)
+            {
+                pool.release(transport);
+            }
+        }
+    }
+
+    /**
+     * The outcome of sending a single email of a batch.
+     */
+    public static final class Result
+    {
+        /** the email */
+        private final Email email;
+
+        /** the message id if the email was sent */
+        private String messageId;
+
+        /** the failure if the email was not sent */
+        private EmailException exception;
+
+        /**
+         * Constructor.
+         *
+         * @param email the email
+         */
+        Result(final Email email)
+        {
+            this.email = email;
+        }
+
+        /**
+         * @return the email
+         */
+        public Email getEmail()
+        {
+            return email;
+        }
+
+        /**
+         * @return the message id or null if sending failed
+         */
+        public String getMessageId()
+        {
+            return messageId;
+        }
+
+        /**
+         * @return the failure or null if the email was sent
+         */
+        public EmailException getException()
+        {
+            return exception;
+        }
+
+        /**
+         * @return true if the email was sent
+         */
+        public boolean isSuccess()
+        {
+            return exception == null;
+        }
+
+        /**
+         * @param messageId the message id of the sent email
+         */
+        void setMessageId(final String messageId)
+        {
+            this.messageId = messageId;
+        }
+
+        /**
+         * @param exception the failure
+         */
+        void setException(final EmailException exception)
+        {
+            this.exception = exception;
+        }
+    }
+}
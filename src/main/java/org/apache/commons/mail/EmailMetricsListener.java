@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+/**
+ * Receives the timings of building and sending emails.
+ *
+ * <p>A listener is set using {@link Email#setMetricsListener(EmailMetricsListener)}
+ * and is usually shared by many emails, so implementations must be
+ * thread-safe and fast. If no listener is set, which is the default,
+ * nothing is measured at all. {@link JmxEmailMetrics} is a ready-made
+ * listener exposing the timings through JMX.
+ *
+ * <p>Runtime exceptions thrown by a listener do not change the outcome of
+ * sending: they are ignored, except for {@link #sendFailed(Email, Throwable, long)}
+ * where they are added as suppressed exceptions to the reported failure.
+ *
+ * @since 1.4
+ */
+public interface EmailMetricsListener
+{
+    /**
+     * The measured phases of building and sending an email.
+     */
+    enum Phase
+    {
+        /** Creating the mail session, see {@link Email#getMailSession()}. */
+        SESSION,
+
+        /** Creating the <code>MimeMessage</code> and setting its subject and content. */
+        CONTENT,
+
+        /** Assembling the body parts and attachments of a multipart email. */
+        MULTIPART,
+
+        /** Setting the sender and recipient addresses. */
+        ADDRESSES,
+
+        /** Setting the custom headers and the sent date. */
+        HEADERS,
+
+        /** Resolving the resources embedded by an {@link ImageHtmlEmail}. */
+        RESOURCES,
+
+        /**
+         * Connecting to the SMTP server including EHLO, STARTTLS and
+         * authentication, or borrowing a transport from a {@link TransportPool}.
+         */
+        CONNECT,
+
+        /** Transferring the message, i.e. MAIL FROM, RCPT TO and DATA. */
+        DATA
+    }
+
+    /**
+     * A phase of building or sending an email completed. A phase may be
+     * reported more than once for an email, e.g. by each class of the email
+     * hierarchy contributing to it.
+     *
+     * @param email the email
+     * @param phase the phase
+     * @param nanos the duration in nanoseconds
+     */
+    void phaseCompleted(Email email, Phase phase, long nanos);
+
+    /**
+     * An email was sent.
+     *
+     * @param email the email
+     * @param size the size of the message in bytes or -1 if unknown
+     * @param nanos the duration of sending in nanoseconds
+     */
+    void messageSent(Email email, long size, long nanos);
+
+    /**
+     * Sending an email failed.
+     *
+     * @param email the email
+     * @param cause the failure
+     * @param nanos the duration until the failure in nanoseconds
+     */
+    void sendFailed(Email email, Throwable cause, long nanos);
+}
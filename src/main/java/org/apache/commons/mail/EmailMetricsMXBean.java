@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link JmxEmailMetrics}. Durations are
+ * reported in microseconds, sizes in bytes.
+ *
+ * @since 1.4
+ */
+public interface EmailMetricsMXBean
+{
+    /**
+     * @return the number of emails sent
+     */
+    long getSentCount();
+
+    /**
+     * @return the number of emails which failed to be sent
+     */
+    long getFailedCount();
+
+    /**
+     * @return the number of bytes sent
+     */
+    long getSentBytes();
+
+    /**
+     * @return the durations of sending in microseconds
+     */
+    Histogram getSendTime();
+
+    /**
+     * @return the sizes of the messages sent in bytes
+     */
+    Histogram getMessageSize();
+
+    /**
+     * @return the durations of the phases in microseconds by phase name
+     */
+    Map<String, Histogram> getPhaseTimes();
+
+    /**
+     * Reset all counters and histograms.
+     */
+    void reset();
+}
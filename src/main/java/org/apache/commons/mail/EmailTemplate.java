@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends the same email to many recipients without building it again.
+ *
+ * <p>An email can only be built once (see EMAIL-95), so a mail merge would
+ * have to create and encode the whole MIME tree, including attachments and
+ * inline images, for every recipient. An <code>EmailTemplate</code> builds
+ * the given email once and keeps the encoded body as bytes. Each call to
+ * {@link #createMimeMessage()} returns a lightweight <code>MimeMessage</code>
+ * sharing these bytes; only its headers (To, Cc, Subject, custom headers)
+ * may be changed and a new Message-ID is generated when it is saved.
+ *
+ * <pre>
+ * EmailTemplate template = new EmailTemplate(htmlEmail);
+ * for (InternetAddress recipient : recipients)
+ * {
+ *     Transport.send(template.createMimeMessage(recipient));
+ * }
+ * </pre>
+ *
+ * <p>Changing the content of a created message, e.g. by calling
+ * <code>setContent()</code> or <code>setText()</code>, is not supported.
+ * This class is thread-safe.
+ *
+ * @since 1.4
+ */
+public class EmailTemplate
+{
+    /** the session of the template email */
+    private final Session session;
+
+    /** the headers of the template email */
+    private final InternetHeaders headers;
+
+    /** the encoded body of the template email */
+    private final byte[] body;
+
+    /**
+     * Constructor. The email is built unless this already happened.
+     *
+     * @param email the email used as template
+     * @throws EmailException building or encoding the email failed
+     */
+    public EmailTemplate(Email email) throws EmailException
+    {
+        EmailUtils.notNull(email, "no email supplied");
+
+        try
+        {
+            if (email.getMimeMessage() == null)
+            {
+                email.buildMimeMessage();
+            }
+
+            MimeMessage message = email.getMimeMessage();
+            message.saveChanges();
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            message.writeTo(os);
+            byte[] raw = os.toByteArray();
+
+            ByteArrayInputStream is = new ByteArrayInputStream(raw);
+            this.headers = new InternetHeaders(is);
+            this.headers.removeHeader("Message-ID");
+            this.body = Arrays.copyOfRange(raw, raw.length - is.available(), raw.length);
+            this.session = email.getMailSession();
+        }
+        catch (MessagingException me)
+        {
+            throw new EmailException(me);
+        }
+        catch (IOException ioe)
+        {
+            throw new EmailException("Encoding the template failed", ioe);
+        }
+    }
+
+    /**
+     * Get the session of the template email.
+     *
+     * @return the mail session
+     */
+    public Session getMailSession()
+    {
+        return session;
+    }
+
+    /**
+     * Create a message with the headers and body of the template email.
+     *
+     * @return the new message
+     * @throws EmailException creating the message failed
+     */
+    public MimeMessage createMimeMessage() throws EmailException
+    {
+        try
+        {
+            return new TemplateMimeMessage(session, headers, body);
+        }
+        catch (MessagingException me)
+        {
+            throw new EmailException(me);
+        }
+    }
+
+    /**
+     * Create a message with the headers and body of the template email
+     * addressed to the given recipients. The "Cc" and "Bcc" recipients of
+     * the template are removed.
+     *
+     * @param to the "To" recipients
+     * @return the new message
+     * @throws EmailException creating the message failed
+     */
+    public MimeMessage createMimeMessage(InternetAddress... to) throws EmailException
+    {
+        MimeMessage result = createMimeMessage();
+
+        try
+        {
+            result.setRecipients(Message.RecipientType.TO, to);
+            result.removeHeader("Cc");
+            result.removeHeader("Bcc");
+        }
+        catch (MessagingException me)
+        {
+            throw new EmailException(me);
+        }
+
+        return result;
+    }
+
+    /**
+     * A message sharing the encoded body of the template. Saving the
+     * message only updates the Message-ID, so the body is written verbatim
+     * instead of being encoded again.
+     */
+    private static final class TemplateMimeMessage extends MimeMessage
+    {
+        /**
+         * Constructor.
+         *
+         * @param session the mail session
+         * @param headers the headers to copy
+         * @param body the shared encoded body, never modified
+         * @throws MessagingException copying the headers failed
+         */
+        TemplateMimeMessage(Session session, InternetHeaders headers, byte[] body)
+            throws MessagingException
+        {
+            super(session);
+
+            Enumeration<?> lines = headers.getAllHeaderLines();
+            while (lines.hasMoreElements())
+            {
+                this.headers.addHeaderLine((String) lines.nextElement());
+            }
+
+            this.content = body;
+            this.modified = false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void saveChanges() throws MessagingException
+        {
+            // unlike the base class do not mark the content as modified
+            this.saved = true;
+            updateHeaders();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void updateHeaders() throws MessagingException
+        {
+            // the content related headers are already part of the template
+            updateMessageID();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.activation.DataSource;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeUtility;
+
+/**
+ * An attachment whose content has already been transfer encoded.
+ *
+ * <p>Attachments added by {@link MultiPartEmail#attach(DataSource, String, String)}
+ * are encoded (e.g. base64) every time the message is written, i.e. for every
+ * email and every retry. An <code>EncodedAttachment</code> is encoded once
+ * and written verbatim afterwards. Instances are immutable and may be
+ * attached to any number of emails using
+ * {@link MultiPartEmail#attach(EncodedAttachment, String, String, String)}
+ * or embedded using {@link HtmlEmail#embed(EncodedAttachment, String)}.
+ *
+ * <p>As a <code>DataSource</code> it provides the decoded content.
+ *
+ * @since 1.4
+ */
+public final class EncodedAttachment implements DataSource
+{
+    /** the size of the copy buffer */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** the encoded content */
+    private final byte[] content;
+
+    /** the content type */
+    private final String contentType;
+
+    /** the content transfer encoding */
+    private final String encoding;
+
+    /** the name of the data source */
+    private final String name;
+
+    /**
+     * Constructor.
+     *
+     * @param content the encoded content
+     * @param contentType the content type
+     * @param encoding the content transfer encoding
+     * @param name the name of the data source
+     */
+    private EncodedAttachment(byte[] content, String contentType, String encoding, String name)
+    {
+        this.content = content;
+        this.contentType = contentType;
+        this.encoding = encoding;
+        this.name = name;
+    }
+
+    /**
+     * Encode a data source using the transfer encoding JavaMail would choose
+     * for it, i.e. "7bit", "quoted-printable" or "base64".
+     *
+     * @param dataSource the data source to encode
+     * @return the encoded attachment
+     * @throws EmailException reading or encoding the data source failed
+     */
+    public static EncodedAttachment encode(DataSource dataSource) throws EmailException
+    {
+        EmailUtils.notNull(dataSource, "no data source supplied");
+        return encode(dataSource, MimeUtility.getEncoding(dataSource));
+    }
+
+    /**
+     * Encode a data source using the given transfer encoding.
+     *
+     * @param dataSource the data source to encode
+     * @param encoding the content transfer encoding, e.g. "base64"
+     * @return the encoded attachment
+     * @throws EmailException reading or encoding the data source failed
+     */
+    public static EncodedAttachment encode(DataSource dataSource, String encoding) throws EmailException
+    {
+        EmailUtils.notNull(dataSource, "no data source supplied");
+
+        if (EmailUtils.isEmpty(encoding))
+        {
+            throw new EmailException("Invalid encoding supplied");
+        }
+
+        InputStream is = null;
+
+        try
+        {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            OutputStream os = MimeUtility.encode(bos, encoding);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+
+            is = dataSource.getInputStream();
+            while ((length = is.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, length);
+            }
+            os.close();
+
+            return new EncodedAttachment(bos.toByteArray(), dataSource.getContentType(), encoding,
+                dataSource.getName());
+        }
+        catch (IOException e)
+        {
+            throw new EmailException("Encoding the attachment failed", e);
+        }
+        catch (MessagingException me)
+        {
+            throw new EmailException(me);
+        }
+        finally
+        {
+            if (is != null)
+            {
+                try
+                {
+                    is.close();
+                }
+                catch (IOException ioe) // NOPMD
+                {
+                    // the content has been read already
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the content type
+     */
+    public String getContentType()
+    {
+        return contentType;
+    }
+
+    /**
+     * Get an input stream decoding the content.
+     *
+     * @return the decoded content
+     * @throws IOException decoding the content failed
+     */
+    public InputStream getInputStream() throws IOException
+    {
+        try
+        {
+            return MimeUtility.decode(new ByteArrayInputStream(content), encoding);
+        }
+        catch (MessagingException me)
+        {
+            IOException ioe = new IOException("Decoding the attachment failed");
+            ioe.initCause(me);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Not supported.
+     *
+     * @return never
+     * @throws IOException always
+     */
+    public OutputStream getOutputStream() throws IOException
+    {
+        throw new IOException("The attachment is read-only");
+    }
+
+    /**
+     * @return the content transfer encoding
+     */
+    public String getEncoding()
+    {
+        return encoding;
+    }
+
+    /**
+     * @return the name of the encoded data source
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the size of the encoded content in bytes
+     */
+    public int getSize()
+    {
+        return content.length;
+    }
+
+    /**
+     * Create a body part writing the encoded content verbatim. The body
+     * parts of all emails share the same content.
+     *
+     * @return the body part
+     * @throws MessagingException creating the body part failed
+     */
+    MimeBodyPart createBodyPart() throws MessagingException
+    {
+        InternetHeaders headers = new InternetHeaders();
+        headers.setHeader("Content-Type", contentType);
+        headers.setHeader("Content-Transfer-Encoding", encoding);
+        return new MimeBodyPart(headers, content);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values such as durations or sizes.
+ *
+ * <p>Values are counted in logarithmic buckets, four per power of two, so
+ * the reported percentiles are the upper bound of a bucket and overestimate
+ * the exact value by less than 25%. Count, total and maximum are exact.
+ *
+ * @since 1.4
+ */
+public final class Histogram
+{
+    /** the number of buckets per power of two, as a power of two */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    /** the number of buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** the number of buckets covering all long values */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** the number of values in each bucket */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /** the number of values */
+    private final AtomicLong count = new AtomicLong();
+
+    /** the sum of all values */
+    private final AtomicLong total = new AtomicLong();
+
+    /** the largest value */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value, negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(final long value)
+    {
+        long v = Math.max(0, value);
+
+        buckets.incrementAndGet(bucket(v));
+        count.incrementAndGet();
+        total.addAndGet(v);
+
+        long current = max.get();
+        while (v > current && !max.compareAndSet(current, v))
+        {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of all values
+     */
+    public long getTotal()
+    {
+        return total.get();
+    }
+
+    /**
+     * @return the mean of all values or 0 if there are none
+     */
+    public long getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * @return the largest value
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @return the median
+     */
+    public long getP50()
+    {
+        return getPercentile(0.5);
+    }
+
+    /**
+     * @return the 99th percentile
+     */
+    public long getP99()
+    {
+        return getPercentile(0.99);
+    }
+
+    /**
+     * @return the 99.9th percentile
+     */
+    public long getP999()
+    {
+        return getPercentile(0.999);
+    }
+
+    /**
+     * Get the value below which the given share of values lie.
+     *
+     * @param percentile the share between 0 and 1
+     * @return the upper bound of the bucket containing the percentile, at most the maximum
+     */
+    public long getPercentile(final double percentile)
+    {
+        long n = count.get();
+
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * n));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+
+            if (seen >= rank)
+            {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "count=" + getCount() + ", mean=" + getMean() + ", p50=" + getP50() + ", p99=" + getP99()
+            + ", p999=" + getP999() + ", max=" + getMax();
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the index of the bucket of the value
+     */
+    private static int bucket(final long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket the index of a bucket
+     * @return the largest value of the bucket
+     */
+    private static long upperBound(final int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long first = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+
+        return first + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
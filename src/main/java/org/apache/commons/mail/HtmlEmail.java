@@ -455,6 +455,65 @@ public class HtmlEmail extends MultiPartEmail
         return embed(dataSource, name, cid);
     }
 
+    /**
+     * Embeds an already encoded attachment in the HTML using a randomly
+     * generated Content-ID. The encoded content is shared with all other
+     * emails the attachment is embedded in and is not encoded again.
+     *
+     * @param attachment the encoded attachment to embed
+     * @param name the name that will be set in the filename header field
+     * @return the generated Content-ID for this attachment
+     * @throws EmailException if the embedding fails or if <code>name</code> is
+     * null or empty
+     * @since 1.4
+     */
+    public String embed(EncodedAttachment attachment, String name) throws EmailException
+    {
+        if (attachment == null)
+        {
+            throw new EmailException("Invalid attachment supplied");
+        }
+        if (EmailUtils.isEmpty(name))
+        {
+            throw new EmailException("name cannot be null or empty");
+        }
+
+        // check if the attachment has already been embedded;
+        // if so, return the cached CID value.
+        if (inlineEmbeds.containsKey(name))
+        {
+            InlineImage ii = inlineEmbeds.get(name);
+            if (attachment.equals(ii.getDataSource()))
+            {
+                return ii.getCid();
+            }
+            else
+            {
+                throw new EmailException("embedded attachment '" + name
+                    + "' is already bound to name " + ii.getDataSource().toString()
+                    + "; existing names cannot be rebound");
+            }
+        }
+
+        String cid = EmailUtils.randomAlphabetic(HtmlEmail.CID_LENGTH).toLowerCase();
+
+        try
+        {
+            MimeBodyPart mbp = attachment.createBodyPart();
+            mbp.setFileName(name);
+            mbp.setDisposition(EmailAttachment.INLINE);
+            mbp.setContentID("<" + cid + ">");
+
+            this.inlineEmbeds.put(name, new InlineImage(cid, attachment, mbp));
+
+            return cid;
+        }
+        catch (MessagingException me)
+        {
+            throw new EmailException(me);
+        }
+    }
+
     /**
      * Embeds the specified <code>DataSource</code> in the HTML using the
      * specified Content-ID. Returns the specified Content-ID string.
@@ -516,7 +575,9 @@ public class HtmlEmail extends MultiPartEmail
     {
         try
         {
+            long start = startPhase();
             build();
+            endPhase(EmailMetricsListener.Phase.MULTIPART, start);
         }
         catch (MessagingException me)
         {
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.Arrays;
+
+/**
+ * Finds the locations of embeddable resources in HTML in a single linear
+ * pass without regular expressions.
+ *
+ * <p>The scanner reports the quoted <code>src</code> attributes of
+ * <code>&lt;img&gt;</code> and <code>&lt;script&gt;</code> tags. If CSS
+ * images are enabled it also reports quoted <code>background</code>
+ * attributes of any tag and <code>url(...)</code> references in
+ * <code>style</code> attributes and <code>&lt;style&gt;</code> elements,
+ * except for "data:" URLs. Comments and the content of script elements
+ * are skipped.
+ *
+ * @since 1.4
+ */
+final class HtmlResourceScanner
+{
+    /** the initial number of locations */
+    private static final int INITIAL_SIZE = 16;
+
+    /** report CSS images as well */
+    private final boolean cssImages;
+
+    /** the HTML being scanned */
+    private String html;
+
+    /** the length of the HTML */
+    private int length;
+
+    /** the start and end offsets of the locations found so far */
+    private int[] locations;
+
+    /** the number of offsets in use */
+    private int count;
+
+    /**
+     * Constructor.
+     *
+     * @param cssImages report background attributes and CSS url() references
+     */
+    HtmlResourceScanner(final boolean cssImages)
+    {
+        this.cssImages = cssImages;
+    }
+
+    /**
+     * Scan the HTML.
+     *
+     * @param html the HTML
+     * @return the start (inclusive) and end (exclusive) offset of every
+     *  location, in ascending order, as consecutive array elements
+     */
+    int[] scan(final String html)
+    {
+        this.html = html;
+        this.length = html.length();
+        this.locations = new int[INITIAL_SIZE];
+        this.count = 0;
+
+        int pos = html.indexOf('<');
+
+        while (pos != -1)
+        {
+            pos = scanMarkup(pos);
+            pos = pos < length ? html.indexOf('<', pos) : -1;
+        }
+
+        int[] result = Arrays.copyOf(locations, count);
+        this.html = null;
+        this.locations = null;
+        return result;
+    }
+
+    /**
+     * Scan markup starting with '&lt;'.
+     *
+     * @param start the position of the '&lt;'
+     * @return the position after the markup
+     */
+    private int scanMarkup(final int start)
+    {
+        if (html.startsWith("<!--", start))
+        {
+            int end = html.indexOf("-->", start + 4);
+            return end == -1 ? length : end + 3;
+        }
+
+        int pos = start + 1;
+        while (pos < length && Character.isLetterOrDigit(html.charAt(pos)))
+        {
+            pos++;
+        }
+
+        if (pos == start + 1)
+        {
+            // closing tag, declaration or a literal '<'
+            return pos;
+        }
+
+        boolean img = isName(start + 1, pos, "img");
+        boolean script = !img && isName(start + 1, pos, "script");
+        boolean style = cssImages && !img && !script && isName(start + 1, pos, "style");
+
+        pos = scanAttributes(pos, img || script);
+
+        if (script)
+        {
+            return skipTo(pos, "</script");
+        }
+        if (style)
+        {
+            int end = skipTo(pos, "</style");
+            scanUrls(pos, end);
+            return end;
+        }
+
+        return pos;
+    }
+
+    /**
+     * Scan the attributes of a tag up to the closing '&gt;'.
+     *
+     * @param start the position after the tag name
+     * @param hasSrc report the src attribute
+     * @return the position after the tag
+     */
+    private int scanAttributes(final int start, final boolean hasSrc)
+    {
+        int pos = start;
+
+        while (pos < length)
+        {
+            char ch = html.charAt(pos);
+
+            if (ch == '>')
+            {
+                return pos + 1;
+            }
+            if (Character.isWhitespace(ch) || ch == '/')
+            {
+                pos++;
+                continue;
+            }
+
+            int nameStart = pos;
+            while (pos < length && !isAttributeNameEnd(html.charAt(pos)))
+            {
+                pos++;
+            }
+            int nameEnd = pos;
+
+            pos = skipWhitespace(pos);
+            if (pos >= length || html.charAt(pos) != '=')
+            {
+                // attribute without value
+                continue;
+            }
+            pos = skipWhitespace(pos + 1);
+            if (pos >= length)
+            {
+                break;
+            }
+
+            char quote = html.charAt(pos);
+            int valueStart;
+            int valueEnd;
+
+            if (quote == '"' || quote == '\'')
+            {
+                valueStart = pos + 1;
+                valueEnd = html.indexOf(quote, valueStart);
+                if (valueEnd == -1)
+                {
+                    return length;
+                }
+                pos = valueEnd + 1;
+
+                if ((hasSrc && isName(nameStart, nameEnd, "src"))
+                    || (cssImages && isName(nameStart, nameEnd, "background")))
+                {
+                    add(valueStart, valueEnd);
+                }
+                else if (cssImages && isName(nameStart, nameEnd, "style"))
+                {
+                    scanUrls(valueStart, valueEnd);
+                }
+            }
+            else
+            {
+                // unquoted values are not reported
+                while (pos < length && !Character.isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>')
+                {
+                    pos++;
+                }
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Scan a CSS text for url() references.
+     *
+     * @param start the start of the CSS text
+     * @param end the end of the CSS text
+     */
+    private void scanUrls(final int start, final int end)
+    {
+        int pos = start;
+
+        while (pos < end - 4)
+        {
+            if (!html.regionMatches(true, pos, "url(", 0, 4))
+            {
+                pos++;
+                continue;
+            }
+
+            pos = skipWhitespace(pos + 4);
+            char quote = pos < end ? html.charAt(pos) : ')';
+            char terminator = quote == '"' || quote == '\'' ? quote : ')';
+            int valueStart = terminator == ')' ? pos : pos + 1;
+            int valueEnd = html.indexOf(terminator, valueStart);
+
+            if (valueEnd == -1 || valueEnd > end)
+            {
+                return;
+            }
+
+            int trimmedEnd = valueEnd;
+            while (trimmedEnd > valueStart && Character.isWhitespace(html.charAt(trimmedEnd - 1)))
+            {
+                trimmedEnd--;
+            }
+
+            if (trimmedEnd > valueStart && !html.regionMatches(true, valueStart, "data:", 0, 5))
+            {
+                add(valueStart, trimmedEnd);
+            }
+
+            pos = valueEnd + 1;
+        }
+    }
+
+    /**
+     * Record a location unless it is empty.
+     *
+     * @param start the start of the location
+     * @param end the end of the location
+     */
+    private void add(final int start, final int end)
+    {
+        if (start == end)
+        {
+            return;
+        }
+        if (count == locations.length)
+        {
+            locations = Arrays.copyOf(locations, count * 2);
+        }
+        locations[count++] = start;
+        locations[count++] = end;
+    }
+
+    /**
+     * Skip raw text up to a closing tag, ignoring case.
+     *
+     * @param start the start of the raw text
+     * @param closingTag the closing tag without '&gt;'
+     * @return the position of the closing tag or the end of the HTML
+     */
+    private int skipTo(final int start, final String closingTag)
+    {
+        for (int pos = html.indexOf('<', start); pos != -1; pos = html.indexOf('<', pos + 1))
+        {
+            if (html.regionMatches(true, pos, closingTag, 0, closingTag.length()))
+            {
+                return pos;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param start the position to start at
+     * @return the position of the next non-whitespace character
+     */
+    private int skipWhitespace(final int start)
+    {
+        int pos = start;
+        while (pos < length && Character.isWhitespace(html.charAt(pos)))
+        {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param start the start of the name
+     * @param end the end of the name
+     * @param name the expected lower case name
+     * @return true if the name matches, ignoring case
+     */
+    private boolean isName(final int start, final int end, final String name)
+    {
+        return end - start == name.length() && html.regionMatches(true, start, name, 0, name.length());
+    }
+
+    /**
+     * @param ch a character
+     * @return true if the character terminates an attribute name
+     */
+    private static boolean isAttributeNameEnd(final char ch)
+    {
+        return ch == '=' || ch == '>' || ch == '/' || Character.isWhitespace(ch);
+    }
+}
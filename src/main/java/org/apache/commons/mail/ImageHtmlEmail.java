@@ -17,11 +17,21 @@
 package org.apache.commons.mail;
 
 import javax.activation.DataSource;
+
+import org.apache.commons.mail.resolver.DataSourceBaseResolver;
+
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Small wrapper class on top of HtmlEmail which encapsulates the required logic
@@ -48,25 +58,33 @@ public class ImageHtmlEmail extends HtmlEmail
     // including newlines on any place, HTML is not case sensitive and there
     // can be arbitrary text between "IMG" and "SRC" like IDs and other things.
 
-    /** regexp for extracting <img> tags */
+    /**
+     * regexp for extracting <img> tags
+     * @deprecated since 1.4, resources are found by a single-pass HTML scanner
+     */
+    @Deprecated
     public static final String REGEX_IMG_SRC =
             "(<[Ii][Mm][Gg]\\s*[^>]*?\\s+[Ss][Rr][Cc]\\s*=\\s*[\"'])([^\"']+?)([\"'])";
 
-    /** regexp for extracting <script> tags */
+    /**
+     * regexp for extracting <script> tags
+     * @deprecated since 1.4, resources are found by a single-pass HTML scanner
+     */
+    @Deprecated
     public static final String REGEX_SCRIPT_SRC =
             "(<[Ss][Cc][Rr][Ii][Pp][Tt]\\s*.*?\\s+[Ss][Rr][Cc]\\s*=\\s*[\"'])([^\"']+?)([\"'])";
 
-    // this pattern looks for the HTML image tag which indicates embedded images,
-    // the grouping is necessary to allow to replace the element with the CID
+    /** resolve the images and script resources to a DataSource */
+    private DataSourceResolver dataSourceResolver;
 
-    /** pattern for extracting <img> tags */
-    private static final Pattern IMG_PATTERN = Pattern.compile(REGEX_IMG_SRC);
+    /** embed CSS images, i.e. background attributes and url() references */
+    private boolean embedCssImages;
 
-    /** pattern for extracting <script> tags */
-    private static final Pattern SCRIPT_PATTERN = Pattern.compile(REGEX_SCRIPT_SRC);
+    /** resolves the resources concurrently, null to resolve them one after another */
+    private Executor resolverExecutor;
 
-    /** resolve the images and script resources to a DataSource */
-    private DataSourceResolver dataSourceResolver;
+    /** the time in milliseconds to wait for concurrently resolved resources */
+    private long resolverTimeout = Long.MAX_VALUE;
 
     /**
      * Get the data source resolver.
@@ -88,6 +106,84 @@ public class ImageHtmlEmail extends HtmlEmail
         this.dataSourceResolver = dataSourceResolver;
     }
 
+    /**
+     * Are CSS images embedded as well?
+     *
+     * @return true if background attributes and CSS url() references are embedded
+     * @since 1.4
+     */
+    public boolean isEmbedCssImages()
+    {
+        return embedCssImages;
+    }
+
+    /**
+     * Embed the resources of <code>background</code> attributes and of
+     * <code>url(...)</code> references in style attributes and style
+     * elements in addition to the image and script sources.
+     *
+     * @param embedCssImages true to embed CSS images
+     * @since 1.4
+     */
+    public void setEmbedCssImages(boolean embedCssImages)
+    {
+        this.embedCssImages = embedCssImages;
+    }
+
+    /**
+     * Get the executor resolving the resources concurrently.
+     *
+     * @return the executor or null if the resources are resolved one after another
+     * @since 1.4
+     */
+    public Executor getResolverExecutor()
+    {
+        return resolverExecutor;
+    }
+
+    /**
+     * Resolve all distinct resources concurrently using the given executor
+     * before the HTML is rewritten, e.g. to avoid paying the latency of
+     * many remote images one after another. The size of the executor's
+     * pool bounds the number of concurrent requests.
+     *
+     * @param resolverExecutor the executor or null to resolve the resources one after another
+     * @since 1.4
+     */
+    public void setResolverExecutor(Executor resolverExecutor)
+    {
+        this.resolverExecutor = resolverExecutor;
+    }
+
+    /**
+     * Get the time to wait for concurrently resolved resources.
+     *
+     * @return the timeout in milliseconds
+     * @since 1.4
+     */
+    public long getResolverTimeout()
+    {
+        return resolverTimeout;
+    }
+
+    /**
+     * Set the overall time to wait for concurrently resolved resources.
+     * Resources not resolved in time are treated like resources not found,
+     * i.e. they are left unchanged if the resolver is lenient and fail the
+     * build otherwise.
+     *
+     * @param resolverTimeout the timeout in milliseconds
+     * @since 1.4
+     */
+    public void setResolverTimeout(long resolverTimeout)
+    {
+        if (resolverTimeout <= 0)
+        {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.resolverTimeout = resolverTimeout;
+    }
+
      /**
       * Does the work of actually building the MimeMessage.
       *
@@ -100,9 +196,12 @@ public class ImageHtmlEmail extends HtmlEmail
         try
         {
             // embed all the matching image and script resources within the email
-            String temp = replacePattern(super.html, IMG_PATTERN);
-            temp = replacePattern(temp, SCRIPT_PATTERN);
-            setHtmlMsg(temp);
+            if (EmailUtils.isNotEmpty(super.html))
+            {
+                long start = startPhase();
+                setHtmlMsg(replaceResources(super.html));
+                endPhase(EmailMetricsListener.Phase.RESOURCES, start);
+            }
             super.buildMimeMessage();
         }
         catch (IOException e)
@@ -112,52 +211,48 @@ public class ImageHtmlEmail extends HtmlEmail
     }
 
     /**
-     * Replace the regexp matching resource locations with "cid:..." references.
+     * Replace the resource locations found by the HTML scanner with
+     * "cid:..." references.
      *
      * @param htmlMessage the HTML message to analyze
-     * @param pattern the regular expression to find resources
      * @return the HTML message containing "cid" references
      * @throws EmailException creating the email failed
      * @throws IOException resolving the resources failed
      */
-    private String replacePattern(final String htmlMessage, final Pattern pattern)
+    private String replaceResources(final String htmlMessage)
             throws EmailException, IOException
     {
-        DataSource dataSource;
-        StringBuffer stringBuffer = new StringBuffer();
+        int[] locations = new HtmlResourceScanner(embedCssImages).scan(htmlMessage);
 
-        // maps "cid" --> name
-        Map<String, String> cidCache = new HashMap<String, String>();
-
-        // maps "name" --> dataSource
-        Map<String, DataSource> dataSourceCache = new HashMap<String, DataSource>();
+        if (locations.length == 0)
+        {
+            return htmlMessage;
+        }
 
-        // in the String, replace all "img src" with a CID and embed the related
-        // image file if we find it.
-        Matcher matcher = pattern.matcher(htmlMessage);
+        // collect the distinct locations in the order of their first occurrence
+        Map<String, DataSource> dataSources = new LinkedHashMap<String, DataSource>();
 
-        // the matcher returns all instances one by one
-        while (matcher.find())
+        for (int i = 0; i < locations.length; i += 2)
         {
-            // in the RegEx we have the <src> element as second "group"
-            String resourceLocation = matcher.group(2);
+            dataSources.put(htmlMessage.substring(locations[i], locations[i + 1]), null);
+        }
 
-            // avoid loading the same data source more than once
-            if (dataSourceCache.get(resourceLocation) == null)
-            {
-                // in lenient mode we might get a 'null' data source if the resource was not found
-                dataSource = getDataSourceResolver().resolve(resourceLocation);
+        resolveAll(dataSources);
 
-                if (dataSource != null)
-                {
-                    dataSourceCache.put(resourceLocation, dataSource);
-                }
-            }
-            else
-            {
-                dataSource = dataSourceCache.get(resourceLocation);
-            }
+        StringBuilder result = new StringBuilder(htmlMessage.length() + locations.length * CID_LENGTH);
 
+        // maps "location" --> cid of the embedded resources
+        Map<String, String> cidCache = new HashMap<String, String>();
+
+        // maps "name" --> cid
+        Map<String, String> nameCache = new HashMap<String, String>();
+
+        for (Map.Entry<String, DataSource> entry : dataSources.entrySet())
+        {
+            String resourceLocation = entry.getKey();
+            DataSource dataSource = entry.getValue();
+
+            // in lenient mode we might get a 'null' data source if the resource was not found
             if (dataSource != null)
             {
                 String name = dataSource.getName();
@@ -166,28 +261,135 @@ public class ImageHtmlEmail extends HtmlEmail
                     name = resourceLocation;
                 }
 
-                String cid = cidCache.get(name);
+                String cid = nameCache.get(name);
 
                 if (cid == null)
                 {
-                    cid = embed(dataSource, dataSource.getName());
-                    cidCache.put(name, cid);
+                    cid = embed(dataSource, name);
+                    nameCache.put(name, cid);
                 }
 
-                // if we embedded something, then we need to replace the URL with
-                // the CID, otherwise the Matcher takes care of adding the
-                // non-replaced text afterwards, so no else is necessary here!
-                matcher.appendReplacement(stringBuffer,
-                        Matcher.quoteReplacement(matcher.group(1) + "cid:" + cid + matcher.group(3)));
+                cidCache.put(resourceLocation, cid);
+            }
+        }
+
+        int position = 0;
+
+        for (int i = 0; i < locations.length; i += 2)
+        {
+            String cid = cidCache.get(htmlMessage.substring(locations[i], locations[i + 1]));
+
+            // if we embedded something, then we need to replace the URL with the CID
+            if (cid != null)
+            {
+                result.append(htmlMessage, position, locations[i]).append("cid:").append(cid);
+                position = locations[i + 1];
+            }
+        }
+
+        result.append(htmlMessage, position, htmlMessage.length());
+
+        return result.toString();
+    }
+
+    /**
+     * Resolve the given locations, concurrently if an executor was set.
+     *
+     * @param dataSources the locations mapped to null, replaced by the resolved data sources
+     * @throws IOException resolving a resource failed or timed out
+     * @throws java.util.concurrent.RejectedExecutionException the executor rejected a resource
+     */
+    private void resolveAll(final Map<String, DataSource> dataSources) throws IOException
+    {
+        final DataSourceResolver resolver = getDataSourceResolver();
+
+        if (resolverExecutor == null || dataSources.size() < 2)
+        {
+            for (Map.Entry<String, DataSource> entry : dataSources.entrySet())
+            {
+                entry.setValue(resolver.resolve(entry.getKey()));
             }
+            return;
         }
 
-        // append the remaining items...
-        matcher.appendTail(stringBuffer);
+        List<FutureTask<DataSource>> tasks = new ArrayList<FutureTask<DataSource>>(dataSources.size());
+
+        try
+        {
+            for (final String resourceLocation : dataSources.keySet())
+            {
+                FutureTask<DataSource> task = new FutureTask<DataSource>(new Callable<DataSource>()
+                {
+                    public DataSource call() throws IOException
+                    {
+                        return resolver.resolve(resourceLocation);
+                    }
+                });
+                tasks.add(task);
+                resolverExecutor.execute(task);
+            }
+
+            long start = System.nanoTime();
+            int i = 0;
 
-        cidCache.clear();
-        dataSourceCache.clear();
+            for (Map.Entry<String, DataSource> entry : dataSources.entrySet())
+            {
+                entry.setValue(await(tasks.get(i++), start, entry.getKey()));
+            }
+        }
+        finally
+        {
+            // also stops the tasks already submitted if the executor rejected one
+            for (FutureTask<DataSource> task : tasks)
+            {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Wait for a resource to be resolved.
+     *
+     * @param task the task resolving the resource
+     * @param start the start of the resolution as returned by {@link System#nanoTime()}
+     * @param resourceLocation the location of the resource
+     * @return the data source or null if not found
+     * @throws IOException resolving the resource failed or timed out
+     */
+    private DataSource await(final FutureTask<DataSource> task, final long start, final String resourceLocation)
+        throws IOException
+    {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(resolverTimeout) - (System.nanoTime() - start);
 
-        return stringBuffer.toString();
+        try
+        {
+            return task.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+        catch (TimeoutException e)
+        {
+            if (getDataSourceResolver() instanceof DataSourceBaseResolver
+                && ((DataSourceBaseResolver) getDataSourceResolver()).isLenient())
+            {
+                return null;
+            }
+            throw new IOException("Resolving the following resource timed out : " + resourceLocation);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Resolving the following resource was interrupted : " + resourceLocation);
+        }
     }
 }
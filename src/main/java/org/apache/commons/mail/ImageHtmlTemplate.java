@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.activation.DataSource;
+
+/**
+ * The HTML of an {@link ImageHtmlEmail} analyzed once and applied to any
+ * number of emails.
+ *
+ * <p><code>ImageHtmlEmail</code> searches the HTML for image and script
+ * resources, resolves and encodes them again for every email. This class
+ * does the searching, resolving and encoding once when it is created. The
+ * HTML is kept as the text segments between the resource locations, so
+ * applying the template to an email only embeds the already encoded
+ * resources and joins the segments with their new Content-IDs.
+ *
+ * <pre>
+ * ImageHtmlTemplate template = new ImageHtmlTemplate(html, resolver);
+ * for (String recipient : recipients)
+ * {
+ *     HtmlEmail email = new HtmlEmail();
+ *     template.apply(email);
+ *     // set the recipient, sender and subject and send the email
+ * }
+ * </pre>
+ *
+ * <p>Resources the resolver does not find (in lenient mode) are left
+ * unchanged, like <code>ImageHtmlEmail</code> does. The template is
+ * immutable and may be applied by multiple threads.
+ *
+ * @since 1.4
+ */
+public class ImageHtmlTemplate
+{
+    /** the HTML between the embedded resources, one more than resources */
+    private final String[] segments;
+
+    /** the embedded resource following each segment */
+    private final Resource[] resources;
+
+    /** the length of all segments */
+    private final int segmentsLength;
+
+    /** the number of distinct resources */
+    private final int resourceCount;
+
+    /**
+     * Analyze the HTML and resolve and encode its resources.
+     *
+     * @param html the HTML containing image and script resources
+     * @param dataSourceResolver resolves the resource locations
+     * @throws EmailException resolving or encoding a resource failed
+     */
+    public ImageHtmlTemplate(final String html, final DataSourceResolver dataSourceResolver)
+        throws EmailException
+    {
+        this(html, dataSourceResolver, false);
+    }
+
+    /**
+     * Analyze the HTML and resolve and encode its resources.
+     *
+     * @param html the HTML containing image and script resources
+     * @param dataSourceResolver resolves the resource locations
+     * @param embedCssImages embed CSS images as well, see {@link ImageHtmlEmail#setEmbedCssImages(boolean)}
+     * @throws EmailException resolving or encoding a resource failed
+     */
+    public ImageHtmlTemplate(final String html, final DataSourceResolver dataSourceResolver,
+        final boolean embedCssImages) throws EmailException
+    {
+        if (EmailUtils.isEmpty(html))
+        {
+            throw new EmailException("Invalid message supplied");
+        }
+        EmailUtils.notNull(dataSourceResolver, "no data source resolver supplied");
+
+        // maps the location to the resource or null if it was not resolved
+        Map<String, Resource> resourcesByLocation = new HashMap<String, Resource>();
+
+        // maps the name to the resource, equally named data sources are embedded once
+        Map<String, Resource> resourcesByName = new HashMap<String, Resource>();
+
+        List<String> segmentList = new ArrayList<String>();
+        List<Resource> resourceList = new ArrayList<Resource>();
+        int position = 0;
+        int length = 0;
+
+        int[] locations = new HtmlResourceScanner(embedCssImages).scan(html);
+
+        for (int i = 0; i < locations.length; i += 2)
+        {
+            String resourceLocation = html.substring(locations[i], locations[i + 1]);
+            Resource resource;
+
+            if (resourcesByLocation.containsKey(resourceLocation))
+            {
+                resource = resourcesByLocation.get(resourceLocation);
+            }
+            else
+            {
+                resource = resolve(dataSourceResolver, resourceLocation, resourcesByName);
+                resourcesByLocation.put(resourceLocation, resource);
+            }
+
+            if (resource != null)
+            {
+                String segment = html.substring(position, locations[i]) + "cid:";
+                segmentList.add(segment);
+                resourceList.add(resource);
+                length += segment.length();
+                position = locations[i + 1];
+            }
+        }
+
+        String segment = html.substring(position);
+        segmentList.add(segment);
+        length += segment.length();
+
+        this.segments = segmentList.toArray(new String[segmentList.size()]);
+        this.resources = resourceList.toArray(new Resource[resourceList.size()]);
+        this.segmentsLength = length;
+        this.resourceCount = resourcesByName.size();
+    }
+
+    /**
+     * Embed the resources in the email and set its HTML referencing them.
+     *
+     * @param email the email
+     * @return the email
+     * @throws EmailException embedding a resource failed
+     */
+    public HtmlEmail apply(final HtmlEmail email) throws EmailException
+    {
+        EmailUtils.notNull(email, "no email supplied");
+
+        Map<Resource, String> cids = new IdentityHashMap<Resource, String>();
+        StringBuilder html = new StringBuilder(segmentsLength + resources.length * HtmlEmail.CID_LENGTH);
+
+        for (int i = 0; i < resources.length; i++)
+        {
+            Resource resource = resources[i];
+            String cid = cids.get(resource);
+
+            if (cid == null)
+            {
+                cid = email.embed(resource.attachment, resource.name);
+                cids.put(resource, cid);
+            }
+
+            html.append(segments[i]).append(cid);
+        }
+
+        html.append(segments[resources.length]);
+        email.setHtmlMsg(html.toString());
+
+        return email;
+    }
+
+    /**
+     * Get the number of distinct embedded resources.
+     *
+     * @return the number of resources
+     */
+    public int getResourceCount()
+    {
+        return resourceCount;
+    }
+
+    /**
+     * Resolve and encode a resource.
+     *
+     * @param dataSourceResolver the resolver
+     * @param resourceLocation the location of the resource
+     * @param resourcesByName the resources already encoded by their name
+     * @return the resource or null if it was not resolved
+     * @throws EmailException resolving or encoding the resource failed
+     */
+    private static Resource resolve(final DataSourceResolver dataSourceResolver, final String resourceLocation,
+        final Map<String, Resource> resourcesByName) throws EmailException
+    {
+        DataSource dataSource;
+
+        try
+        {
+            // in lenient mode we might get a 'null' data source if the resource was not found
+            dataSource = dataSourceResolver.resolve(resourceLocation);
+        }
+        catch (IOException e)
+        {
+            throw new EmailException("Resolving the resource " + resourceLocation + " failed", e);
+        }
+
+        if (dataSource == null)
+        {
+            return null;
+        }
+
+        String name = dataSource.getName();
+        if (EmailUtils.isEmpty(name))
+        {
+            name = resourceLocation;
+        }
+
+        Resource resource = resourcesByName.get(name);
+
+        if (resource == null)
+        {
+            resource = new Resource(EncodedAttachment.encode(dataSource), name);
+            resourcesByName.put(name, resource);
+        }
+
+        return resource;
+    }
+
+    /**
+     * An encoded resource and the name it is embedded with.
+     */
+    private static final class Resource
+    {
+        /** the encoded content */
+        private final EncodedAttachment attachment;
+
+        /** the name used to embed the resource */
+        private final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param attachment the encoded content
+         * @param name the name used to embed the resource
+         */
+        Resource(final EncodedAttachment attachment, final String name)
+        {
+            this.attachment = attachment;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * An {@link EmailMetricsListener} counting the emails sent and recording
+ * the durations of all phases in histograms, exposed as an MXBean.
+ *
+ * <pre>
+ * JmxEmailMetrics metrics = new JmxEmailMetrics();
+ * metrics.register("newsletter");
+ * email.setMetricsListener(metrics);
+ * </pre>
+ *
+ * <p>This class is thread-safe and is meant to be shared by all emails.
+ *
+ * @since 1.4
+ */
+public class JmxEmailMetrics implements EmailMetricsListener, EmailMetricsMXBean
+{
+    /** The JMX domain the metrics are registered with. */
+    public static final String JMX_DOMAIN = "org.apache.commons.mail";
+
+    /** the number of nanoseconds per recorded unit */
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /** the number of emails sent */
+    private final AtomicLong sentCount = new AtomicLong();
+
+    /** the number of failed emails */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** the number of bytes sent */
+    private final AtomicLong sentBytes = new AtomicLong();
+
+    /** the durations of sending */
+    private final Histogram sendTime = new Histogram();
+
+    /** the sizes of the messages */
+    private final Histogram messageSize = new Histogram();
+
+    /** the durations of each phase */
+    private final Map<Phase, Histogram> phaseTimes = new EnumMap<Phase, Histogram>(Phase.class);
+
+    /** the name the metrics are registered with */
+    private ObjectName objectName;
+
+    /**
+     * Constructor.
+     */
+    public JmxEmailMetrics()
+    {
+        for (Phase phase : Phase.values())
+        {
+            phaseTimes.put(phase, new Histogram());
+        }
+    }
+
+    /**
+     * Register the metrics with the platform MBean server using the name
+     * "org.apache.commons.mail:type=EmailMetrics,name=&lt;name&gt;".
+     *
+     * @param name the name distinguishing these metrics
+     * @return this
+     * @throws EmailException the registration failed
+     */
+    public synchronized JmxEmailMetrics register(final String name) throws EmailException
+    {
+        try
+        {
+            return register(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(JMX_DOMAIN + ":type=EmailMetrics,name=" + ObjectName.quote(name)));
+        }
+        catch (MalformedObjectNameException e)
+        {
+            throw new EmailException("Invalid name : " + name, e);
+        }
+    }
+
+    /**
+     * Register the metrics with an MBean server.
+     *
+     * @param server the MBean server
+     * @param name the object name
+     * @return this
+     * @throws EmailException the registration failed
+     */
+    public synchronized JmxEmailMetrics register(final MBeanServer server, final ObjectName name)
+        throws EmailException
+    {
+        if (objectName != null)
+        {
+            throw new IllegalStateException("The metrics are already registered as " + objectName);
+        }
+
+        try
+        {
+            objectName = server.registerMBean(this, name).getObjectName();
+        }
+        catch (JMException e)
+        {
+            throw new EmailException("Registering the metrics as " + name + " failed", e);
+        }
+
+        return this;
+    }
+
+    /**
+     * Unregister the metrics from the platform MBean server if they were
+     * registered by {@link #register(String)}.
+     *
+     * @throws EmailException unregistering failed
+     */
+    public synchronized void unregister() throws EmailException
+    {
+        unregister(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Unregister the metrics from an MBean server if they are registered.
+     *
+     * @param server the MBean server
+     * @throws EmailException unregistering failed
+     */
+    public synchronized void unregister(final MBeanServer server) throws EmailException
+    {
+        if (objectName != null)
+        {
+            try
+            {
+                server.unregisterMBean(objectName);
+                objectName = null;
+            }
+            catch (JMException e)
+            {
+                throw new EmailException("Unregistering the metrics " + objectName + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return the name the metrics are registered with or null
+     */
+    public synchronized ObjectName getObjectName()
+    {
+        return objectName;
+    }
+
+    /** {@inheritDoc} */
+    public void phaseCompleted(final Email email, final Phase phase, final long nanos)
+    {
+        phaseTimes.get(phase).record(nanos / NANOS_PER_MICRO);
+    }
+
+    /** {@inheritDoc} */
+    public void messageSent(final Email email, final long size, final long nanos)
+    {
+        sentCount.incrementAndGet();
+        sendTime.record(nanos / NANOS_PER_MICRO);
+
+        if (size >= 0)
+        {
+            sentBytes.addAndGet(size);
+            messageSize.record(size);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void sendFailed(final Email email, final Throwable cause, final long nanos)
+    {
+        failedCount.incrementAndGet();
+    }
+
+    /** {@inheritDoc} */
+    public long getSentCount()
+    {
+        return sentCount.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getFailedCount()
+    {
+        return failedCount.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getSentBytes()
+    {
+        return sentBytes.get();
+    }
+
+    /** {@inheritDoc} */
+    public Histogram getSendTime()
+    {
+        return sendTime;
+    }
+
+    /** {@inheritDoc} */
+    public Histogram getMessageSize()
+    {
+        return messageSize;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, Histogram> getPhaseTimes()
+    {
+        Map<String, Histogram> result = new LinkedHashMap<String, Histogram>();
+
+        for (Map.Entry<Phase, Histogram> entry : phaseTimes.entrySet())
+        {
+            result.put(entry.getKey().name(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the durations of a phase in microseconds.
+     *
+     * @param phase the phase
+     * @return the histogram of the phase
+     */
+    public Histogram getPhaseTime(final Phase phase)
+    {
+        return phaseTimes.get(phase);
+    }
+
+    /** {@inheritDoc} */
+    public void reset()
+    {
+        sentCount.set(0);
+        failedCount.set(0);
+        sentBytes.set(0);
+        sendTime.reset();
+        messageSize.reset();
+
+        for (Histogram histogram : phaseTimes.values())
+        {
+            histogram.reset();
+        }
+    }
+}
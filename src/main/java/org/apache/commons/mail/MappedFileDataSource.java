@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.activation.DataSource;
+import javax.activation.FileTypeMap;
+
+/**
+ * A read-only DataSource memory-mapping a file.
+ *
+ * <p>A <code>FileDataSource</code> opens and reads the file again whenever
+ * the message is written, e.g. for every retry or when the message is
+ * also written to disk. This data source maps the file once and every
+ * stream returned by {@link #getInputStream()} reads the mapped memory
+ * directly. Files larger than 2 GB are mapped as multiple regions.
+ *
+ * <p>The file must not be modified or truncated while it is mapped. The
+ * mapping is released when the data source is garbage collected. Use it
+ * with {@link MultiPartEmail#attach(javax.activation.DataSource, String, String)}
+ * or {@link HtmlEmail#embed(javax.activation.DataSource, String)}.
+ *
+ * @since 1.4
+ */
+public class MappedFileDataSource implements DataSource
+{
+    /** The maximum size of a single mapped region. */
+    private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+    /** The mapped file. */
+    private final File file;
+
+    /** The mapped regions of the file. */
+    private final ByteBuffer[] regions;
+
+    /** The size of the file. */
+    private final long size;
+
+    /** The file type map used to determine the content type. */
+    private FileTypeMap fileTypeMap;
+
+    /**
+     * Map the given file.
+     *
+     * @param file the file to map
+     * @throws IOException the file could not be mapped
+     */
+    public MappedFileDataSource(final File file) throws IOException
+    {
+        this(file, MAX_REGION_SIZE);
+    }
+
+    /**
+     * Map the given file using regions of the given size.
+     *
+     * @param file the file to map
+     * @param regionSize the maximum size of a mapped region
+     * @throws IOException the file could not be mapped
+     */
+    MappedFileDataSource(final File file, final long regionSize) throws IOException
+    {
+        EmailUtils.notNull(file, "no file supplied");
+
+        this.file = file;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            this.size = channel.size();
+
+            int count = (int) Math.max(1, (size + regionSize - 1) / regionSize);
+            this.regions = new ByteBuffer[count];
+
+            for (int i = 0; i < count; i++)
+            {
+                long position = i * regionSize;
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(regionSize, size - position));
+                regions[i] = region;
+            }
+        }
+        finally
+        {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Get the content type determined by the file type map.
+     *
+     * @return the content type
+     */
+    public String getContentType()
+    {
+        FileTypeMap map = fileTypeMap == null ? FileTypeMap.getDefaultFileTypeMap() : fileTypeMap;
+        return map.getContentType(file);
+    }
+
+    /**
+     * Set the file type map used to determine the content type.
+     *
+     * @param fileTypeMap the file type map or null to use the default one
+     */
+    public void setFileTypeMap(final FileTypeMap fileTypeMap)
+    {
+        this.fileTypeMap = fileTypeMap;
+    }
+
+    /**
+     * Get an input stream reading the mapped file. Every call returns a
+     * new stream positioned at the start of the file.
+     *
+     * @return the input stream
+     */
+    public InputStream getInputStream()
+    {
+        return new MappedInputStream(regions);
+    }
+
+    /**
+     * Not supported.
+     *
+     * @return never
+     * @throws IOException always
+     */
+    public OutputStream getOutputStream() throws IOException
+    {
+        throw new IOException("The data source is read-only");
+    }
+
+    /**
+     * Get the name of the file.
+     *
+     * @return the file name
+     */
+    public String getName()
+    {
+        return file.getName();
+    }
+
+    /**
+     * Get the mapped file.
+     *
+     * @return the file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Get the size of the mapped file.
+     *
+     * @return the size in bytes
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Reads the mapped regions using independent buffer positions.
+     */
+    private static final class MappedInputStream extends InputStream
+    {
+        /** the regions with positions private to this stream */
+        private final ByteBuffer[] regions;
+
+        /** the index of the current region */
+        private int index;
+
+        /**
+         * Constructor.
+         *
+         * @param regions the shared regions
+         */
+        MappedInputStream(final ByteBuffer[] regions)
+        {
+            this.regions = new ByteBuffer[regions.length];
+
+            for (int i = 0; i < regions.length; i++)
+            {
+                this.regions[i] = regions[i].duplicate();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read()
+        {
+            ByteBuffer region = nextRegion();
+            return region == null ? -1 : region.get() & 0xff;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+
+            ByteBuffer region = nextRegion();
+            if (region == null)
+            {
+                return -1;
+            }
+
+            int length = Math.min(len, region.remaining());
+            region.get(b, off, length);
+            return length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long skip(final long n)
+        {
+            long skipped = 0;
+            ByteBuffer region;
+
+            while (skipped < n && (region = nextRegion()) != null)
+            {
+                int length = (int) Math.min(n - skipped, region.remaining());
+                region.position(region.position() + length);
+                skipped += length;
+            }
+
+            return skipped;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int available()
+        {
+            long remaining = 0;
+
+            for (int i = index; i < regions.length; i++)
+            {
+                remaining += regions[i].remaining();
+            }
+
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Get the region to read from, advancing past exhausted regions.
+         *
+         * @return the current region or null at the end of the file
+         */
+        private ByteBuffer nextRegion()
+        {
+            while (index < regions.length)
+            {
+                if (regions[index].hasRemaining())
+                {
+                    return regions[index];
+                }
+                index++;
+            }
+            return null;
+        }
+    }
+}
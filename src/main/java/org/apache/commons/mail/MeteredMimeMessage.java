@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * A <code>MimeMessage</code> remembering how many bytes it wrote last,
+ * which is the size of the message transferred to the SMTP server.
+ *
+ * @since 1.4
+ */
+class MeteredMimeMessage extends MimeMessage
+{
+    /** the number of bytes written last, -1 if not written yet */
+    private volatile long writtenSize = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param session the mail session
+     */
+    MeteredMimeMessage(final Session session)
+    {
+        super(session);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeTo(final OutputStream os, final String[] ignoreList) throws IOException, MessagingException
+    {
+        final long[] count = new long[1];
+
+        super.writeTo(new FilterOutputStream(os)
+        {
+            @Override
+            public void write(final int b) throws IOException
+            {
+                out.write(b);
+                count[0]++;
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException
+            {
+                out.write(b, off, len);
+                count[0] += len;
+            }
+        }, ignoreList);
+
+        writtenSize = count[0];
+    }
+
+    /**
+     * @return the number of bytes written last or -1 if the message was not written yet
+     */
+    long getWrittenSize()
+    {
+        return writtenSize;
+    }
+}
@@ -224,6 +224,8 @@ public class MultiPartEmail extends Email
     {
         try
         {
+            long start = startPhase();
+
             if (primaryBodyPart != null)
             {
                 // before a multipart message can be sent, we must make sure that
@@ -249,6 +251,7 @@ public class MultiPartEmail extends Email
                 getContainer().setSubType(subType);
             }
 
+            endPhase(EmailMetricsListener.Phase.MULTIPART, start);
             super.buildMimeMessage();
         }
         catch (MessagingException me)
@@ -478,6 +481,53 @@ public class MultiPartEmail extends Email
         return this;
     }
 
+    /**
+     * Attach an already encoded attachment. The encoded content is shared
+     * with all other emails the attachment is added to and written without
+     * encoding it again.
+     *
+     * @param attachment An encoded attachment.
+     * @param name The name field for the attachment.
+     * @param description A description for the attachment.
+     * @param disposition Either mixed or inline.
+     * @return A MultiPartEmail.
+     * @throws EmailException see javax.mail.internet.MimeBodyPart
+     *  for definitions
+     * @since 1.4
+     */
+    public MultiPartEmail attach(
+        EncodedAttachment attachment,
+        String name,
+        String description,
+        String disposition)
+        throws EmailException
+    {
+        if (attachment == null)
+        {
+            throw new EmailException("Invalid attachment supplied");
+        }
+        if (EmailUtils.isEmpty(name))
+        {
+            name = attachment.getName();
+        }
+        try
+        {
+            BodyPart bodyPart = attachment.createBodyPart();
+            getContainer().addBodyPart(bodyPart);
+
+            bodyPart.setDisposition(disposition);
+            bodyPart.setFileName(name);
+            bodyPart.setDescription(description);
+        }
+        catch (MessagingException me)
+        {
+            throw new EmailException(me);
+        }
+        setBoolHasAttachments(true);
+
+        return this;
+    }
+
     /**
      * Gets first body part of the message.
      *
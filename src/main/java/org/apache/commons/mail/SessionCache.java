@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.mail.Session;
+
+/**
+ * A bounded cache of mail sessions shared between emails.
+ *
+ * <p>By default every email creates its own <code>Session</code> in
+ * {@link Email#getMailSession()}. Emails configured with the same
+ * <code>SessionCache</code> share one <code>Session</code> as long as
+ * they use identical session settings (host name, ports, TLS/SSL flags,
+ * partial sending, timeouts, bounce address, debug flag and an equal
+ * <code>Authenticator</code>). The least recently used sessions are
+ * evicted once the cache is full.
+ *
+ * <p>Please note that a shared session must not be modified by the
+ * caller, e.g. by changing its properties. This class is thread-safe.
+ *
+ * @since 1.4
+ */
+public class SessionCache
+{
+    /** The default maximum number of cached sessions. */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    /** The maximum number of cached sessions. */
+    private final int maxSize;
+
+    /** The cached sessions in least recently used order. */
+    private final Map<SessionKey, Session> sessions;
+
+    /**
+     * Constructor using the default size.
+     */
+    public SessionCache()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize the maximum number of cached sessions
+     * @throws IllegalArgumentException if the size is less than 1
+     */
+    public SessionCache(final int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("cache size must be at least 1");
+        }
+
+        this.maxSize = maxSize;
+        this.sessions = new LinkedHashMap<SessionKey, Session>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SessionKey, Session> eldest)
+            {
+                return size() > SessionCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of cached sessions.
+     *
+     * @return the maximum size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of cached sessions.
+     *
+     * @return the number of cached sessions
+     */
+    public synchronized int size()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * Remove all cached sessions.
+     */
+    public synchronized void clear()
+    {
+        sessions.clear();
+    }
+
+    /**
+     * Look up the session for the given settings.
+     *
+     * @param key the session settings
+     * @return the cached session or null
+     */
+    synchronized Session get(final SessionKey key)
+    {
+        return sessions.get(key);
+    }
+
+    /**
+     * Add a session unless another thread already added one for the
+     * same settings.
+     *
+     * @param key the session settings
+     * @param session the newly created session
+     * @return the session to be used for the given settings
+     */
+    synchronized Session put(final SessionKey key, final Session session)
+    {
+        Session result = sessions.get(key);
+
+        if (result == null)
+        {
+            sessions.put(key, session);
+            result = session;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.Arrays;
+
+import javax.mail.Authenticator;
+
+/**
+ * Canonical fingerprint of the settings of a mail session, i.e. a fixed
+ * sequence of setting values together with the <code>Authenticator</code>.
+ * Two keys are equal if all values are equal and the authenticators are
+ * equal.
+ *
+ * <p>
+ * This is a package scoped class, and should not be used directly by users.
+ * </p>
+ *
+ * @since 1.4
+ */
+final class SessionKey
+{
+    /** the setting values */
+    private final String[] values;
+
+    /** the authenticator, may be null */
+    private final Authenticator authenticator;
+
+    /** the precomputed hash code */
+    private final int hashCode;
+
+    /**
+     * Constructor.
+     *
+     * @param values the setting values, the array is not copied
+     * @param authenticator the authenticator, may be null
+     */
+    SessionKey(String[] values, Authenticator authenticator)
+    {
+        this.values = values;
+        this.authenticator = authenticator;
+        this.hashCode = 31 * Arrays.hashCode(values) + (authenticator != null ? authenticator.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof SessionKey))
+        {
+            return false;
+        }
+
+        SessionKey that = (SessionKey) obj;
+
+        return this.hashCode == that.hashCode
+            && Arrays.equals(this.values, that.values)
+            && (this.authenticator == null
+                ? that.authenticator == null : this.authenticator.equals(that.authenticator));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+}
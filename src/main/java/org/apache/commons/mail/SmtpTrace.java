@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The timing breakdown of sending a single email.
+ *
+ * <p>A trace consists of the steps of building the message and of the SMTP
+ * conversation in the order they happened. The SMTP steps are named after
+ * the protocol exchange:
+ * <ul>
+ * <li>BUILD: building the <code>MimeMessage</code>, if sent by {@link Email#send()}</li>
+ * <li>PREPARE: updating the headers of the message before it is sent</li>
+ * <li>DNS: resolving the host name of the SMTP server</li>
+ * <li>CONNECT: opening the connection and receiving the greeting, including
+ * the TLS handshake when using SSL on connect</li>
+ * <li>EHLO or HELO</li>
+ * <li>STARTTLS: the STARTTLS command and the TLS handshake</li>
+ * <li>AUTH: authenticating</li>
+ * <li>MAIL FROM</li>
+ * <li>RCPT TO: one step per recipient with the address as detail</li>
+ * <li>DATA: transferring the message, which includes encoding its content</li>
+ * <li>QUIT: closing the connection</li>
+ * </ul>
+ * A pooled connection only records the connection steps in the trace of
+ * the email which opened it and no QUIT step.
+ *
+ * @since 1.4
+ */
+public final class SmtpTrace
+{
+    /** the time the trace started */
+    private final long startMillis;
+
+    /** the time the trace started for measuring durations */
+    private final long startNanos;
+
+    /** the steps in the order they happened */
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /** the SMTP server */
+    private String server;
+
+    /** the outcome reported by the transport */
+    private String outcome;
+
+    /** the failure or null */
+    private Throwable failure;
+
+    /** the total duration, -1 while the trace is not finished */
+    private long totalNanos = -1;
+
+    /**
+     * Start a trace now.
+     */
+    SmtpTrace()
+    {
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Record a step which ends now.
+     *
+     * @param name the name of the step
+     * @param detail the detail, e.g. the recipient address, or null
+     * @param start the start of the step from <code>System.nanoTime()</code>
+     * @param replyCode the SMTP reply code or -1
+     */
+    synchronized void addStep(final String name, final String detail, final long start, final int replyCode)
+    {
+        steps.add(new Step(name, detail, start - startNanos, System.nanoTime() - start, replyCode));
+    }
+
+    /**
+     * @param server the SMTP server as host:port
+     */
+    synchronized void setServer(final String server)
+    {
+        this.server = server;
+    }
+
+    /**
+     * @param outcome the outcome reported by the transport
+     */
+    synchronized void setOutcome(final String outcome)
+    {
+        this.outcome = outcome;
+    }
+
+    /**
+     * End the trace now.
+     *
+     * @param failure the failure or null if the email was sent
+     */
+    synchronized void finish(final Throwable failure)
+    {
+        this.failure = failure;
+        this.totalNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return the time the trace started
+     */
+    public Date getStartTime()
+    {
+        return new Date(startMillis);
+    }
+
+    /**
+     * @return the SMTP server as host:port or null if no connection was opened
+     */
+    public synchronized String getServer()
+    {
+        return server;
+    }
+
+    /**
+     * @return the steps in the order they happened
+     */
+    public synchronized List<Step> getSteps()
+    {
+        return Collections.unmodifiableList(new ArrayList<Step>(steps));
+    }
+
+    /**
+     * Get the total duration of all steps with the given name.
+     *
+     * @param name the name of the steps, e.g. "RCPT TO"
+     * @return the duration in nanoseconds
+     */
+    public synchronized long getDuration(final String name)
+    {
+        long result = 0;
+
+        for (Step step : steps)
+        {
+            if (step.name.equals(name))
+            {
+                result += step.durationNanos;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the total duration in nanoseconds or -1 if the trace is not finished
+     */
+    public synchronized long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    /**
+     * @return "delivered", "partially delivered", "not delivered" or null if the transport reported nothing
+     */
+    public synchronized String getOutcome()
+    {
+        return outcome;
+    }
+
+    /**
+     * @return the failure or null if the email was sent
+     */
+    public synchronized Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder("SMTP trace");
+
+        if (server != null)
+        {
+            sb.append(' ').append(server);
+        }
+        for (Step step : steps)
+        {
+            sb.append(", ").append(step);
+        }
+        if (totalNanos >= 0)
+        {
+            sb.append(", total ").append(formatMillis(totalNanos));
+        }
+        if (outcome != null)
+        {
+            sb.append(", ").append(outcome);
+        }
+        if (failure != null)
+        {
+            sb.append(", failed: ").append(failure);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @param nanos a duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static String formatMillis(final long nanos)
+    {
+        return String.format(Locale.US, "%.3f ms", nanos / 1e6);
+    }
+
+    /**
+     * A step of sending an email.
+     */
+    public static final class Step
+    {
+        /** the name */
+        private final String name;
+
+        /** the detail or null */
+        private final String detail;
+
+        /** the start relative to the start of the trace */
+        private final long startNanos;
+
+        /** the duration */
+        private final long durationNanos;
+
+        /** the SMTP reply code or -1 */
+        private final int replyCode;
+
+        /**
+         * Constructor.
+         *
+         * @param name the name
+         * @param detail the detail or null
+         * @param startNanos the start relative to the start of the trace
+         * @param durationNanos the duration
+         * @param replyCode the SMTP reply code or -1
+         */
+        Step(final String name, final String detail, final long startNanos, final long durationNanos,
+            final int replyCode)
+        {
+            this.name = name;
+            this.detail = detail;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.replyCode = replyCode;
+        }
+
+        /**
+         * @return the name, e.g. "EHLO"
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the detail, e.g. the recipient address, or null
+         */
+        public String getDetail()
+        {
+            return detail;
+        }
+
+        /**
+         * @return the start in nanoseconds relative to the start of the trace
+         */
+        public long getStartNanos()
+        {
+            return startNanos;
+        }
+
+        /**
+         * @return the duration in nanoseconds
+         */
+        public long getDurationNanos()
+        {
+            return durationNanos;
+        }
+
+        /**
+         * @return the SMTP reply code or -1 if the step has none
+         */
+        public int getReplyCode()
+        {
+            return replyCode;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(name);
+
+            if (detail != null)
+            {
+                sb.append(' ').append(detail);
+            }
+            sb.append(' ').append(formatMillis(durationNanos));
+            if (replyCode >= 0)
+            {
+                sb.append(" (").append(replyCode).append(')');
+            }
+
+            return sb.toString();
+        }
+    }
+}
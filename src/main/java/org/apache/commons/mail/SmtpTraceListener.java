@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+/**
+ * Receives the trace of every email sent, successfully or not.
+ *
+ * <p>A listener is set using {@link Email#setSmtpTraceListener(SmtpTraceListener)}
+ * and is usually shared by many emails, so implementations must be
+ * thread-safe. It is called by the thread sending the email after the
+ * send completed, so it should not block, e.g. log or queue the trace.
+ * Runtime exceptions thrown by the listener are ignored.
+ *
+ * @since 1.4
+ */
+public interface SmtpTraceListener
+{
+    /**
+     * Sending an email completed.
+     *
+     * @param email the email
+     * @param trace the trace of sending it
+     */
+    void traced(Email email, SmtpTrace trace);
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.activation.DataSource;
+
+/**
+ * A read-only DataSource buffering the content of an input stream.
+ *
+ * <p>In contrast to {@link ByteArrayDataSource} the content is read
+ * directly into a list of fixed size chunks, so it is neither copied
+ * through intermediate buffers nor into a single contiguous array, and
+ * {@link #getInputStream()} reads the chunks without copying them. Once the
+ * content exceeds the spill threshold it is written to a temporary file
+ * instead, so large attachments do not have to fit into the heap.
+ *
+ * <p>The temporary file is deleted by {@link #close()}, which should be
+ * called once the email has been sent.
+ *
+ * @since 1.4
+ */
+public class StreamingDataSource implements DataSource, Closeable
+{
+    /** The default size in bytes up to which the content is kept on the heap. */
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    /** The size of a single chunk. */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** The content type. */
+    private final String contentType;
+
+    /** The chunks holding the content or null if spilled. */
+    private List<byte[]> chunks;
+
+    /** The temporary file holding the content or null if on the heap. */
+    private File file;
+
+    /** The size of the content in bytes. */
+    private long size;
+
+    /** The name of the data source. */
+    private String name = "";
+
+    /**
+     * Create a data source using the default spill threshold. The input
+     * stream is read completely but not closed.
+     *
+     * @param is the content
+     * @param contentType the content type
+     * @throws IOException reading the content failed
+     */
+    public StreamingDataSource(final InputStream is, final String contentType) throws IOException
+    {
+        this(is, contentType, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Create a data source. The input stream is read completely but not
+     * closed.
+     *
+     * @param is the content
+     * @param contentType the content type
+     * @param spillThreshold the size in bytes up to which the content is kept on the heap
+     * @throws IOException reading the content or writing the temporary file failed
+     */
+    public StreamingDataSource(final InputStream is, final String contentType, final int spillThreshold)
+        throws IOException
+    {
+        EmailUtils.notNull(is, "no input stream supplied");
+
+        if (spillThreshold < 0)
+        {
+            throw new IllegalArgumentException("spill threshold must not be negative");
+        }
+
+        this.contentType = contentType;
+        this.chunks = new ArrayList<byte[]>();
+
+        byte[] chunk = null;
+        int offset = CHUNK_SIZE;
+        int length;
+
+        while (size <= spillThreshold)
+        {
+            if (offset == CHUNK_SIZE)
+            {
+                chunk = new byte[CHUNK_SIZE];
+                chunks.add(chunk);
+                offset = 0;
+            }
+
+            length = is.read(chunk, offset, CHUNK_SIZE - offset);
+            if (length == -1)
+            {
+                return;
+            }
+
+            offset += length;
+            size += length;
+        }
+
+        spill(is);
+    }
+
+    /**
+     * Write the chunks read so far and the remaining content to a
+     * temporary file.
+     *
+     * @param is the remaining content
+     * @throws IOException writing the temporary file failed
+     */
+    private void spill(final InputStream is) throws IOException
+    {
+        file = File.createTempFile("commons-email-", ".tmp");
+        OutputStream os = null;
+
+        try
+        {
+            os = new FileOutputStream(file);
+
+            long remaining = size;
+            for (byte[] chunk : chunks)
+            {
+                int length = (int) Math.min(remaining, CHUNK_SIZE);
+                os.write(chunk, 0, length);
+                remaining -= length;
+            }
+
+            // reuse the first chunk as copy buffer
+            byte[] buffer = chunks.get(0);
+            chunks = null;
+
+            int length;
+            while ((length = is.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, length);
+                size += length;
+            }
+
+            os.close();
+            os = null;
+        }
+        catch (IOException e)
+        {
+            if (os != null)
+            {
+                os.close();
+            }
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the content type.
+     *
+     * @return the content type, "application/octet-stream" if none was given
+     */
+    public String getContentType()
+    {
+        return contentType == null ? "application/octet-stream" : contentType;
+    }
+
+    /**
+     * Get an input stream reading the content. Every call returns a new
+     * stream positioned at the start of the content.
+     *
+     * @return the input stream
+     * @throws IOException the data source was already closed
+     */
+    public InputStream getInputStream() throws IOException
+    {
+        if (chunks != null)
+        {
+            return new ChunkInputStream(chunks, size);
+        }
+        if (file != null)
+        {
+            return new FileInputStream(file);
+        }
+        throw new IOException("The data source is already closed");
+    }
+
+    /**
+     * Not supported.
+     *
+     * @return never
+     * @throws IOException always
+     */
+    public OutputStream getOutputStream() throws IOException
+    {
+        throw new IOException("The data source is read-only");
+    }
+
+    /**
+     * Get the name.
+     *
+     * @return the name, by default an empty string
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Sets the name for this DataSource.
+     *
+     * @param name the name
+     */
+    public void setName(final String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Get the size of the content.
+     *
+     * @return the size in bytes
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Is the content kept on the heap?
+     *
+     * @return true if the content was not spilled to a temporary file
+     */
+    public boolean isInMemory()
+    {
+        return file == null;
+    }
+
+    /**
+     * Release the content and delete the temporary file. Streams already
+     * obtained from {@link #getInputStream()} should be closed before.
+     */
+    public void close()
+    {
+        chunks = null;
+
+        if (file != null)
+        {
+            file.delete();
+            file = null;
+        }
+    }
+
+    /**
+     * Reads the chunks of a data source without copying them.
+     */
+    private static final class ChunkInputStream extends InputStream
+    {
+        /** the chunks to read */
+        private final List<byte[]> chunks;
+
+        /** the number of bytes left to read */
+        private long remaining;
+
+        /** the index of the current chunk */
+        private int index;
+
+        /** the position within the current chunk */
+        private int offset;
+
+        /**
+         * Constructor.
+         *
+         * @param chunks the chunks to read
+         * @param size the number of bytes to read
+         */
+        ChunkInputStream(final List<byte[]> chunks, final long size)
+        {
+            this.chunks = chunks;
+            this.remaining = size;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read()
+        {
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            byte[] chunk = nextChunk();
+            remaining--;
+            return chunk[offset++] & 0xff;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (remaining == 0)
+            {
+                return -1;
+            }
+
+            byte[] chunk = nextChunk();
+            int length = (int) Math.min(Math.min(len, CHUNK_SIZE - offset), remaining);
+            System.arraycopy(chunk, offset, b, off, length);
+            offset += length;
+            remaining -= length;
+            return length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int available()
+        {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Get the chunk to read from, advancing to the next chunk if the
+         * current one is exhausted.
+         *
+         * @return the current chunk
+         */
+        private byte[] nextChunk()
+        {
+            if (offset == CHUNK_SIZE)
+            {
+                index++;
+                offset = 0;
+            }
+            return chunks.get(index);
+        }
+    }
+}
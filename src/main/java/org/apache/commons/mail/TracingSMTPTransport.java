@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+import javax.mail.event.TransportEvent;
+
+import com.sun.mail.smtp.SMTPSSLTransport;
+import com.sun.mail.smtp.SMTPTransport;
+
+/**
+ * An SMTP transport recording the steps of the protocol exchange in an
+ * {@link SmtpTrace}. Without a trace it behaves exactly like its super
+ * class.
+ *
+ * <p>The steps are measured by overriding the protocol methods of
+ * <code>SMTPTransport</code>, the replies of each recipient by hooking the
+ * reading of the server responses. The outcome is taken from the transport
+ * events when they are created, since JavaMail delivers them to
+ * <code>TransportListener</code>s asynchronously.
+ *
+ * @since 1.4
+ */
+final class TracingSMTPTransport extends SMTPTransport
+{
+    /** "smtp" or "smtps" */
+    private final String protocol;
+
+    /** the trace being recorded or null */
+    private SmtpTrace trace;
+
+    /** waiting for the greeting of the server */
+    private boolean connecting;
+
+    /** the recipients if sending RCPT TO commands */
+    private Address[] recipients;
+
+    /** the index of the recipient whose reply is read next, -1 if not sending RCPT TO commands */
+    private int recipientIndex = -1;
+
+    /** the start of the current step */
+    private long stepStart;
+
+    /**
+     * Constructor.
+     *
+     * @param session the mail session
+     * @param protocol "smtp" or "smtps"
+     * @param isSSL use SSL on connect
+     */
+    private TracingSMTPTransport(final Session session, final String protocol, final boolean isSSL)
+    {
+        super(session, new URLName(protocol, null, -1, null, null, null), protocol, isSSL);
+        this.protocol = protocol;
+    }
+
+    /**
+     * Create a tracing transport replacing the transport the session
+     * provides for the given address. If the session is configured to use
+     * another transport implementation, that one is returned and not traced.
+     * The implementation is determined from the configured provider, so no
+     * transport is created just to look at its class.
+     *
+     * @param session the mail session
+     * @param address the address to send to or null for the default transport
+     * @return the transport
+     * @throws MessagingException no transport is available
+     */
+    static Transport create(final Session session, final Address address) throws MessagingException
+    {
+        String protocol = getProtocol(session, address);
+
+        if (protocol != null)
+        {
+            String className = session.getProvider(protocol).getClassName();
+
+            if (SMTPTransport.class.getName().equals(className))
+            {
+                return new TracingSMTPTransport(session, "smtp", false);
+            }
+            else if (SMTPSSLTransport.class.getName().equals(className))
+            {
+                return new TracingSMTPTransport(session, "smtps", true);
+            }
+        }
+
+        return address != null ? session.getTransport(address) : session.getTransport();
+    }
+
+    /**
+     * Determine the transport protocol the session uses for an address
+     * the same way <code>Session.getTransport()</code> does.
+     *
+     * @param session the mail session
+     * @param address the address to send to or null for the default transport
+     * @return the protocol or null if it is not configured by a property
+     */
+    private static String getProtocol(final Session session, final Address address)
+    {
+        if (address == null)
+        {
+            return session.getProperty("mail.transport.protocol");
+        }
+
+        String protocol = session.getProperty("mail.transport.protocol." + address.getType());
+
+        if (protocol == null && "rfc822".equals(address.getType()))
+        {
+            // the default address map of JavaMail
+            protocol = "smtp";
+        }
+
+        return protocol;
+    }
+
+    /**
+     * Start or stop recording the SMTP exchange of a transport if it is a
+     * tracing transport.
+     *
+     * @param transport the transport
+     * @param trace the trace to record in or null to stop recording
+     */
+    static void attach(final Transport transport, final SmtpTrace trace)
+    {
+        if (transport instanceof TracingSMTPTransport)
+        {
+            TracingSMTPTransport tracing = (TracingSMTPTransport) transport;
+
+            synchronized (tracing)
+            {
+                tracing.trace = trace;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected synchronized boolean protocolConnect(final String host, final int port, final String user,
+        final String password) throws MessagingException
+    {
+        if (trace == null || ((user == null || password == null)
+            && "true".equalsIgnoreCase(session.getProperty("mail." + protocol + ".auth"))))
+        {
+            // JavaMail asks for the credentials and calls again without connecting
+            return super.protocolConnect(host, port, user, password);
+        }
+
+        String serverPort = port != -1 ? String.valueOf(port) : session.getProperty("mail." + protocol + ".port");
+        trace.setServer(serverPort != null ? host + ":" + serverPort : host);
+
+        long start = System.nanoTime();
+        try
+        {
+            // JavaMail resolves the name again, answered by the JVM's cache
+            InetAddress.getByName(host);
+        }
+        catch (UnknownHostException e) // NOPMD
+        {
+            // reported when connecting
+        }
+        trace.addStep("DNS", host, start, -1);
+
+        connecting = true;
+        stepStart = System.nanoTime();
+
+        try
+        {
+            boolean result = super.protocolConnect(host, port, user, password);
+
+            if (result && user != null && password != null && supportsExtension("AUTH"))
+            {
+                trace.addStep("AUTH", user, stepStart, getLastReturnCode());
+            }
+
+            return result;
+        }
+        finally
+        {
+            connecting = false;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean ehlo(final String domain) throws MessagingException
+    {
+        long start = System.nanoTime();
+        boolean result = super.ehlo(domain);
+        endStep("EHLO", domain, start);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void helo(final String domain) throws MessagingException
+    {
+        long start = System.nanoTime();
+        super.helo(domain);
+        endStep("HELO", domain, start);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void startTLS() throws MessagingException
+    {
+        long start = System.nanoTime();
+        super.startTLS();
+        endStep("STARTTLS", null, start);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void sendMessage(final Message message, final Address[] addresses)
+        throws MessagingException
+    {
+        recipients = addresses;
+
+        try
+        {
+            super.sendMessage(message, addresses);
+        }
+        finally
+        {
+            recipients = null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void mailFrom() throws MessagingException
+    {
+        long start = System.nanoTime();
+        super.mailFrom();
+        endStep("MAIL FROM", null, start);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void rcptTo() throws MessagingException
+    {
+        recipientIndex = 0;
+        stepStart = System.nanoTime();
+
+        try
+        {
+            super.rcptTo();
+        }
+        finally
+        {
+            recipientIndex = -1;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected OutputStream data() throws MessagingException
+    {
+        stepStart = System.nanoTime();
+        return super.data();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void finishData() throws IOException, MessagingException
+    {
+        super.finishData();
+        endStep("DATA", null, stepStart);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws MessagingException
+    {
+        if (trace == null)
+        {
+            super.close();
+            return;
+        }
+
+        long start = System.nanoTime();
+        super.close();
+        endStep("QUIT", null, start);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int readServerResponse() throws MessagingException
+    {
+        int result = super.readServerResponse();
+
+        if (trace != null)
+        {
+            if (connecting)
+            {
+                trace.addStep("CONNECT", null, stepStart, result);
+                connecting = false;
+                stepStart = System.nanoTime();
+            }
+            else if (recipientIndex >= 0 && recipients != null)
+            {
+                String recipient = recipientIndex < recipients.length ? recipients[recipientIndex].toString() : null;
+                trace.addStep("RCPT TO", recipient, stepStart, result);
+                recipientIndex++;
+                stepStart = System.nanoTime();
+            }
+        }
+
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void notifyTransportListeners(final int type, final Address[] validSent, final Address[] validUnsent,
+        final Address[] invalid, final Message msg)
+    {
+        if (trace != null)
+        {
+            switch (type)
+            {
+                case TransportEvent.MESSAGE_DELIVERED:
+                    trace.setOutcome("delivered");
+                    break;
+                case TransportEvent.MESSAGE_PARTIALLY_DELIVERED:
+                    trace.setOutcome("partially delivered");
+                    break;
+                default:
+                    trace.setOutcome("not delivered");
+                    break;
+            }
+        }
+
+        super.notifyTransportListeners(type, validSent, validUnsent, invalid, msg);
+    }
+
+    /**
+     * Record a step ending now and start the next one.
+     *
+     * @param name the name of the step
+     * @param detail the detail or null
+     * @param start the start of the step
+     */
+    private void endStep(final String name, final String detail, final long start)
+    {
+        if (trace != null)
+        {
+            trace.addStep(name, detail, start, getLastReturnCode());
+        }
+        stepStart = System.nanoTime();
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+/**
+ * A pool of connected <code>Transport</code> instances.
+ *
+ * <p>Opening an SMTP connection involves a TCP connect, EHLO and possibly
+ * STARTTLS and AUTH. When many emails are sent to the same server, these
+ * round-trips dominate the send time. The pool keeps connected transports
+ * around and hands them out again for the same <code>Session</code>
+ * instance, so a connection is never shared between sessions which may
+ * differ in their properties or their <code>Authenticator</code>.
+ *
+ * <p>Emails using the pool share their sessions through the
+ * {@link SessionCache} of the pool unless they have a cache of their own,
+ * so emails with identical session settings share their connections as
+ * well. Sessions supplied by {@link Email#setMailSession(Session)} are
+ * used as they are, their connections are only shared by the emails
+ * using the very same session.
+ *
+ * <p>A transport taken from the pool is checked with
+ * {@link Transport#isConnected()}, which issues an SMTP NOOP, before it is
+ * returned to the caller. Idle transports are closed once they have not
+ * been used for the configured maximum idle time.
+ *
+ * <p>Every transport obtained by {@link #borrow(Session)} must
+ * be handed back using either {@link #release(Transport)} or
+ * {@link #invalidate(Transport)}. This class is thread-safe.
+ *
+ * @since 1.4
+ */
+public class TransportPool
+{
+    /** The default maximum number of idle transports kept per session. */
+    public static final int DEFAULT_MAX_IDLE_PER_KEY = 8;
+
+    /** The default time in milliseconds an idle transport is kept open. */
+    public static final long DEFAULT_MAX_IDLE_TIME_MS = 60000L;
+
+    /** The maximum number of idle transports kept per session. */
+    private final int maxIdlePerKey;
+
+    /** The time in milliseconds an idle transport is kept open. */
+    private final long maxIdleTime;
+
+    /** The sessions shared by the emails using this pool. */
+    private final SessionCache sessionCache = new SessionCache();
+
+    /** The idle transports per session, most recently used first. */
+    private final Map<Session, LinkedList<IdleTransport>> idleTransports =
+        new IdentityHashMap<Session, LinkedList<IdleTransport>>();
+
+    /** The transports currently handed out, mapped to their session. */
+    private final Map<Transport, Session> borrowedTransports = new IdentityHashMap<Transport, Session>();
+
+    /** Has the pool been closed? */
+    private boolean closed;
+
+    /**
+     * Constructor using the default limits.
+     */
+    public TransportPool()
+    {
+        this(DEFAULT_MAX_IDLE_PER_KEY, DEFAULT_MAX_IDLE_TIME_MS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxIdlePerKey the maximum number of idle transports kept per session
+     * @param maxIdleTime the time in milliseconds an idle transport is kept open
+     * @throws IllegalArgumentException if one of the limits is negative
+     */
+    public TransportPool(int maxIdlePerKey, long maxIdleTime)
+    {
+        if (maxIdlePerKey < 0 || maxIdleTime < 0)
+        {
+            throw new IllegalArgumentException("pool limits must not be negative");
+        }
+
+        this.maxIdlePerKey = maxIdlePerKey;
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * Get a connected transport for the given session. An idle transport
+     * of the same session is reused if it is still alive, otherwise a new
+     * transport is created and connected.
+     *
+     * @param session the mail session to send with
+     * @return a connected transport
+     * @throws IllegalStateException if the pool has been closed
+     * @throws MessagingException creating or connecting the transport failed
+     */
+    public Transport borrow(Session session)
+        throws MessagingException
+    {
+        return this.borrow(session, null);
+    }
+
+    /**
+     * Get a connected transport recording the SMTP exchange in a trace.
+     * New transports are created as tracing transports, idle transports
+     * are traced if they were created that way.
+     *
+     * @param session the mail session to send with
+     * @param trace the trace to record in or null
+     * @return a connected transport
+     * @throws MessagingException creating or connecting the transport failed
+     */
+    Transport borrow(Session session, SmtpTrace trace)
+        throws MessagingException
+    {
+        EmailUtils.notNull(session, "no mail session supplied");
+
+        Transport transport = pollIdle(session);
+
+        // probe the idle connections, the server may have dropped them
+        while (transport != null && !transport.isConnected())
+        {
+            closeQuietly(transport);
+            transport = pollIdle(session);
+        }
+
+        if (transport == null)
+        {
+            transport = trace != null ? TracingSMTPTransport.create(session, null) : session.getTransport();
+            TracingSMTPTransport.attach(transport, trace);
+            transport.connect();
+        }
+        else
+        {
+            TracingSMTPTransport.attach(transport, trace);
+        }
+
+        synchronized (this)
+        {
+            borrowedTransports.put(transport, session);
+        }
+
+        return transport;
+    }
+
+    /**
+     * Hand a transport back to the pool after a successful send. The
+     * transport is closed if the pool is full or closed.
+     *
+     * @param transport the transport obtained from {@link #borrow(Session)}
+     * @throws IllegalArgumentException if the transport was not borrowed from this pool
+     */
+    public void release(Transport transport)
+    {
+        boolean keep = false;
+
+        synchronized (this)
+        {
+            Session session = borrowedTransports.remove(transport);
+
+            if (session == null)
+            {
+                throw new IllegalArgumentException("transport was not borrowed from this pool");
+            }
+
+            if (!closed)
+            {
+                LinkedList<IdleTransport> idle = idleTransports.get(session);
+
+                if (idle == null && maxIdlePerKey > 0)
+                {
+                    idle = new LinkedList<IdleTransport>();
+                    idleTransports.put(session, idle);
+                }
+
+                if (idle != null && idle.size() < maxIdlePerKey)
+                {
+                    idle.addFirst(new IdleTransport(transport, System.currentTimeMillis()));
+                    keep = true;
+                }
+            }
+        }
+
+        if (!keep)
+        {
+            closeQuietly(transport);
+        }
+    }
+
+    /**
+     * Hand a transport back to the pool after a failed send. The
+     * transport is closed and not reused.
+     *
+     * @param transport the transport obtained from {@link #borrow(Session)}
+     */
+    public void invalidate(Transport transport)
+    {
+        synchronized (this)
+        {
+            borrowedTransports.remove(transport);
+        }
+
+        closeQuietly(transport);
+    }
+
+    /**
+     * Close all idle transports which exceeded the maximum idle time.
+     * This is done implicitly whenever a transport is borrowed but may
+     * also be called periodically by the application.
+     */
+    public void evictIdle()
+    {
+        closeAll(removeIdle(false));
+    }
+
+    /**
+     * Close the pool together with all idle transports. Transports which
+     * are currently borrowed are closed when they are released.
+     */
+    public void close()
+    {
+        List<Transport> transports;
+
+        synchronized (this)
+        {
+            closed = true;
+            transports = removeIdle(true);
+        }
+
+        closeAll(transports);
+    }
+
+    /**
+     * Get the number of idle transports.
+     *
+     * @return the number of idle transports
+     */
+    public synchronized int getIdleCount()
+    {
+        int result = 0;
+
+        for (List<IdleTransport> idle : idleTransports.values())
+        {
+            result += idle.size();
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the number of transports currently borrowed.
+     *
+     * @return the number of borrowed transports
+     */
+    public synchronized int getActiveCount()
+    {
+        return borrowedTransports.size();
+    }
+
+    /**
+     * Get the cache sharing the sessions of the emails using this pool.
+     *
+     * @return the session cache
+     */
+    SessionCache getSessionCache()
+    {
+        return sessionCache;
+    }
+
+    /**
+     * Take the most recently used idle transport of the given session.
+     * Expired transports are closed on the way.
+     *
+     * @param session the mail session
+     * @return an idle transport or null if there is none
+     * @throws IllegalStateException if the pool has been closed
+     */
+    private Transport pollIdle(Session session)
+    {
+        Transport result = null;
+        List<Transport> expired;
+
+        synchronized (this)
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("The transport pool is already closed");
+            }
+
+            expired = removeIdle(false);
+            LinkedList<IdleTransport> idle = idleTransports.get(session);
+
+            if (idle != null)
+            {
+                result = idle.removeFirst().getTransport();
+
+                if (idle.isEmpty())
+                {
+                    idleTransports.remove(session);
+                }
+            }
+        }
+
+        closeAll(expired);
+        return result;
+    }
+
+    /**
+     * Remove idle transports from the pool.
+     *
+     * @param all remove all idle transports or only the expired ones
+     * @return the removed transports which have to be closed by the caller
+     */
+    private List<Transport> removeIdle(boolean all)
+    {
+        List<Transport> result = new ArrayList<Transport>();
+        long expiry = System.currentTimeMillis() - maxIdleTime;
+
+        synchronized (this)
+        {
+            Iterator<LinkedList<IdleTransport>> sessions = idleTransports.values().iterator();
+            while (sessions.hasNext())
+            {
+                LinkedList<IdleTransport> idle = sessions.next();
+                Iterator<IdleTransport> iter = idle.iterator();
+                while (iter.hasNext())
+                {
+                    IdleTransport candidate = iter.next();
+                    if (all || candidate.getLastUsed() < expiry)
+                    {
+                        result.add(candidate.getTransport());
+                        iter.remove();
+                    }
+                }
+
+                // do not keep sessions without connections reachable
+                if (idle.isEmpty())
+                {
+                    sessions.remove();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Close all given transports ignoring any errors.
+     *
+     * @param transports the transports to close
+     */
+    private static void closeAll(List<Transport> transports)
+    {
+        for (Transport transport : transports)
+        {
+            closeQuietly(transport);
+        }
+    }
+
+    /**
+     * Close a transport ignoring any errors.
+     *
+     * @param transport the transport to close
+     */
+    private static void closeQuietly(Transport transport)
+    {
+        try
+        {
+            transport.close();
+        }
+        catch (MessagingException me) // NOPMD
+        {
+            // the connection is discarded anyway
+        }
+    }
+
+    /**
+     * An idle transport together with the time it was released.
+     */
+    private static final class IdleTransport
+    {
+        /** the connected transport */
+        private final Transport transport;
+
+        /** the time the transport was released */
+        private final long lastUsed;
+
+        /**
+         * Constructor.
+         *
+         * @param transport the connected transport
+         * @param lastUsed the time the transport was released
+         */
+        IdleTransport(Transport transport, long lastUsed)
+        {
+            this.transport = transport;
+            this.lastUsed = lastUsed;
+        }
+
+        /**
+         * @return the connected transport
+         */
+        Transport getTransport()
+        {
+            return transport;
+        }
+
+        /**
+         * @return the time the transport was released
+         */
+        long getLastUsed()
+        {
+            return lastUsed;
+        }
+    }
+}
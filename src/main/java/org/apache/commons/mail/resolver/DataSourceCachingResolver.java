@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.resolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.activation.DataSource;
+import javax.mail.util.ByteArrayDataSource;
+
+import org.apache.commons.mail.DataSourceResolver;
+
+/**
+ * A decorator caching the content of the resources resolved by another
+ * resolver.
+ *
+ * <p>The content, content type and name of every resolved resource are
+ * kept in memory, so e.g. an image referenced by many
+ * <code>ImageHtmlEmail</code>s is downloaded or read only once. The least
+ * recently used entries are evicted once the cached content exceeds the
+ * maximum size, and entries expire after the time to live. Resources not
+ * found are not cached.
+ *
+ * <p>This class is thread-safe and is meant to be shared by all emails.
+ * Concurrent requests for a resource that is not cached yet may resolve it
+ * more than once.
+ *
+ * @since 1.4
+ */
+public class DataSourceCachingResolver extends DataSourceBaseResolver
+{
+    /** The default maximum size of the cached content in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    /** The default time to live of a cache entry in milliseconds. */
+    public static final long DEFAULT_TIME_TO_LIVE_MS = 10L * 60 * 1000;
+
+    /** the size of the copy buffer */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** the resolver providing the resources */
+    private final DataSourceResolver dataSourceResolver;
+
+    /** the maximum size of the cached content */
+    private final long maxBytes;
+
+    /** the time to live of an entry, 0 for no expiry */
+    private final long timeToLive;
+
+    /** the cached entries in least recently used order */
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /** the size of the cached content */
+    private long cachedBytes;
+
+    /** the number of requests served from the cache */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** the number of requests passed to the resolver */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** the number of entries evicted or expired */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructor using the default size and time to live.
+     *
+     * @param dataSourceResolver the resolver providing the resources
+     */
+    public DataSourceCachingResolver(final DataSourceResolver dataSourceResolver)
+    {
+        this(dataSourceResolver, DEFAULT_MAX_BYTES, DEFAULT_TIME_TO_LIVE_MS);
+    }
+
+    /**
+     * Constructor. The lenient flag is taken from the given resolver if it
+     * is a <code>DataSourceBaseResolver</code>.
+     *
+     * @param dataSourceResolver the resolver providing the resources
+     * @param maxBytes the maximum size of the cached content in bytes
+     * @param timeToLive the time to live of an entry in milliseconds, 0 for no expiry
+     */
+    public DataSourceCachingResolver(final DataSourceResolver dataSourceResolver, final long maxBytes,
+        final long timeToLive)
+    {
+        super(dataSourceResolver instanceof DataSourceBaseResolver
+            && ((DataSourceBaseResolver) dataSourceResolver).isLenient());
+
+        if (dataSourceResolver == null)
+        {
+            throw new IllegalArgumentException("no data source resolver supplied");
+        }
+        if (maxBytes < 0 || timeToLive < 0)
+        {
+            throw new IllegalArgumentException("size and time to live must not be negative");
+        }
+
+        this.dataSourceResolver = dataSourceResolver;
+        this.maxBytes = maxBytes;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Get the resolver providing the resources.
+     *
+     * @return the underlying resolver
+     */
+    public DataSourceResolver getDataSourceResolver()
+    {
+        return dataSourceResolver;
+    }
+
+    /** {@inheritDoc} */
+    public DataSource resolve(final String resourceLocation) throws IOException
+    {
+        return resolve(resourceLocation, isLenient());
+    }
+
+    /** {@inheritDoc} */
+    public DataSource resolve(final String resourceLocation, final boolean isLenient) throws IOException
+    {
+        Entry entry = get(resourceLocation);
+
+        if (entry != null)
+        {
+            hitCount.incrementAndGet();
+            return entry.createDataSource();
+        }
+
+        missCount.incrementAndGet();
+
+        DataSource dataSource = dataSourceResolver.resolve(resourceLocation, isLenient);
+
+        if (dataSource == null)
+        {
+            return null;
+        }
+
+        entry = new Entry(read(dataSource), dataSource.getContentType(), dataSource.getName(),
+            timeToLive > 0 ? System.currentTimeMillis() + timeToLive : Long.MAX_VALUE);
+        put(resourceLocation, entry);
+
+        return entry.createDataSource();
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of requests passed to the underlying resolver
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries removed because the cache was full or they expired
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of cached resources
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return the size of the cached content in bytes
+     */
+    public synchronized long getCachedBytes()
+    {
+        return cachedBytes;
+    }
+
+    /**
+     * Remove all cached resources. The statistics are not reset.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Look up an entry, removing it if it expired.
+     *
+     * @param resourceLocation the resource location
+     * @return the entry or null
+     */
+    private synchronized Entry get(final String resourceLocation)
+    {
+        Entry entry = entries.get(resourceLocation);
+
+        if (entry != null && entry.expires <= System.currentTimeMillis())
+        {
+            remove(resourceLocation);
+            evictionCount.incrementAndGet();
+            entry = null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Add an entry and evict the least recently used entries if the cache
+     * is full. Entries larger than the cache are not added.
+     *
+     * @param resourceLocation the resource location
+     * @param entry the entry
+     */
+    private synchronized void put(final String resourceLocation, final Entry entry)
+    {
+        if (entry.content.length > maxBytes)
+        {
+            return;
+        }
+
+        remove(resourceLocation);
+        entries.put(resourceLocation, entry);
+        cachedBytes += entry.content.length;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (cachedBytes > maxBytes && iterator.hasNext())
+        {
+            cachedBytes -= iterator.next().content.length;
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param resourceLocation the resource location
+     */
+    private void remove(final String resourceLocation)
+    {
+        Entry entry = entries.remove(resourceLocation);
+
+        if (entry != null)
+        {
+            cachedBytes -= entry.content.length;
+        }
+    }
+
+    /**
+     * Read the content of a data source.
+     *
+     * @param dataSource the data source
+     * @return the content
+     * @throws IOException reading the content failed
+     */
+    private static byte[] read(final DataSource dataSource) throws IOException
+    {
+        InputStream is = dataSource.getInputStream();
+
+        try
+        {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+
+            while ((length = is.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, length);
+            }
+
+            return os.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * A cached resource.
+     */
+    private static final class Entry
+    {
+        /** the content, shared by all created data sources */
+        private final byte[] content;
+
+        /** the content type */
+        private final String contentType;
+
+        /** the name */
+        private final String name;
+
+        /** the time the entry expires */
+        private final long expires;
+
+        /**
+         * Constructor.
+         *
+         * @param content the content
+         * @param contentType the content type
+         * @param name the name
+         * @param expires the time the entry expires
+         */
+        Entry(final byte[] content, final String contentType, final String name, final long expires)
+        {
+            this.content = content;
+            this.contentType = contentType;
+            this.name = name;
+            this.expires = expires;
+        }
+
+        /**
+         * @return a data source reading the cached content
+         */
+        DataSource createDataSource()
+        {
+            ByteArrayDataSource result = new ByteArrayDataSource(content, contentType);
+            result.setName(name);
+            return result;
+        }
+    }
+}
@@ -20,26 +20,48 @@ import javax.activation.DataSource;
 import javax.activation.FileTypeMap;
 import javax.mail.util.ByteArrayDataSource;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Creates a <code>DataSource</code> based on an class path.
+ * <p>
+ * Since 1.4 a resolver created with caching enabled reads the content of
+ * every resource found once and keeps it; all data sources returned for a
+ * resource share the same content. The cache can be filled when the
+ * application starts using {@link #warmUp(Collection)} or
+ * {@link #warmUp(String)}. Without caching every resource is read from the
+ * class path whenever it is resolved.
  *
  * @since 1.3
  * @version $Id: DataSourceClassPathResolver.java 1459991 2013-03-22 21:12:38Z tn $
  */
 public class DataSourceClassPathResolver extends DataSourceBaseResolver
 {
+    /** the size of the copy buffer */
+    private static final int BUFFER_SIZE = 8192;
+
     /** the base string of the resource relative to the classpath when resolving relative paths */
     private final String classPathBase;
 
+    /** the content of the resources found by their resource name or null if caching is disabled */
+    private final Map<String, CachedResource> cache;
+
     /**
      * Constructor
      */
     public DataSourceClassPathResolver()
     {
         this.classPathBase = "/";
+        this.cache = null;
     }
 
     /**
@@ -50,6 +72,7 @@ public class DataSourceClassPathResolver extends DataSourceBaseResolver
     public DataSourceClassPathResolver(final String classPathBase)
     {
         this.classPathBase = classPathBase.endsWith("/") ? classPathBase : classPathBase + "/";
+        this.cache = null;
     }
 
     /**
@@ -59,9 +82,23 @@ public class DataSourceClassPathResolver extends DataSourceBaseResolver
      * @param lenient shall we ignore resources not found or throw an exception?
      */
     public DataSourceClassPathResolver(final String classPathBase, final boolean lenient)
+    {
+        this(classPathBase, lenient, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param classPathBase a base class path
+     * @param lenient shall we ignore resources not found or throw an exception?
+     * @param cached shall the content of the resources found be kept?
+     * @since 1.4
+     */
+    public DataSourceClassPathResolver(final String classPathBase, final boolean lenient, final boolean cached)
     {
         super(lenient);
         this.classPathBase = classPathBase.endsWith("/") ? classPathBase : classPathBase + "/";
+        this.cache = cached ? new ConcurrentHashMap<String, CachedResource>() : null;
     }
 
     /**
@@ -87,16 +124,14 @@ public class DataSourceClassPathResolver extends DataSourceBaseResolver
         {
             if (!isCid(resourceLocation) && !isHttpUrl(resourceLocation))
             {
-                String mimeType = FileTypeMap.getDefaultFileTypeMap().getContentType(resourceLocation);
-                String resourceName = getResourceName(resourceLocation);
-                InputStream is = DataSourceClassPathResolver.class.getResourceAsStream(resourceName);
+                CachedResource resource = load(resourceLocation);
 
-                if (is != null)
+                if (resource != null)
                 {
-                    ByteArrayDataSource ds = new ByteArrayDataSource(is, mimeType);
+                    ByteArrayDataSource ds = new ByteArrayDataSource(resource.content, resource.mimeType);
                     // EMAIL-125: set the name of the DataSource to the normalized resource URL
                     // similar to other DataSource implementations, e.g. FileDataSource, URLDataSource
-                    ds.setName(DataSourceClassPathResolver.class.getResource(resourceName).toString());
+                    ds.setName(resource.name);
                     result = ds;
                 }
                 else
@@ -128,6 +163,143 @@ public class DataSourceClassPathResolver extends DataSourceBaseResolver
         }
     }
 
+    /**
+     * Load the given resources into the cache.
+     *
+     * @param resourceLocations the resource locations relative to the class path base
+     * @return the number of resources found
+     * @throws IOException reading a resource failed
+     * @throws IllegalStateException caching is disabled
+     * @since 1.4
+     */
+    public int warmUp(final Collection<String> resourceLocations) throws IOException
+    {
+        if (cache == null)
+        {
+            throw new IllegalStateException("Caching is disabled for this resolver");
+        }
+
+        int result = 0;
+
+        for (String resourceLocation : resourceLocations)
+        {
+            if (load(resourceLocation) != null)
+            {
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Load the resources listed in a manifest into the cache. The manifest
+     * is a UTF-8 encoded class path resource containing one resource
+     * location per line; empty lines and lines starting with '#' are
+     * ignored.
+     *
+     * @param manifest the absolute class path of the manifest
+     * @return the number of resources found
+     * @throws IOException the manifest was not found or reading a resource failed
+     * @throws IllegalStateException caching is disabled
+     * @since 1.4
+     */
+    public int warmUp(final String manifest) throws IOException
+    {
+        InputStream is = DataSourceClassPathResolver.class.getResourceAsStream(manifest);
+
+        if (is == null)
+        {
+            throw new IOException("The following class path resource was not found : " + manifest);
+        }
+
+        List<String> resourceLocations = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+
+        try
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+
+                if (line.length() > 0 && !line.startsWith("#"))
+                {
+                    resourceLocations.add(line);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        return warmUp(resourceLocations);
+    }
+
+    /**
+     * Get the number of cached resources.
+     *
+     * @return the number of cached resources, 0 if caching is disabled
+     * @since 1.4
+     */
+    public int getCacheSize()
+    {
+        return cache != null ? cache.size() : 0;
+    }
+
+    /**
+     * Get the cached resource, reading it from the class path if necessary
+     * or if caching is disabled.
+     *
+     * @param resourceLocation the resource location
+     * @return the resource or null if it was not found
+     * @throws IOException reading the resource failed
+     */
+    private CachedResource load(final String resourceLocation) throws IOException
+    {
+        String resourceName = getResourceName(resourceLocation);
+        CachedResource result = cache != null ? cache.get(resourceName) : null;
+
+        if (result == null)
+        {
+            InputStream is = DataSourceClassPathResolver.class.getResourceAsStream(resourceName);
+
+            if (is == null)
+            {
+                return null;
+            }
+
+            try
+            {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int length;
+
+                while ((length = is.read(buffer)) != -1)
+                {
+                    os.write(buffer, 0, length);
+                }
+
+                result = new CachedResource(os.toByteArray(),
+                    FileTypeMap.getDefaultFileTypeMap().getContentType(resourceLocation),
+                    DataSourceClassPathResolver.class.getResource(resourceName).toString());
+            }
+            finally
+            {
+                is.close();
+            }
+
+            if (cache != null)
+            {
+                cache.put(resourceName, result);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the resource name for a given resource location.
      *
@@ -139,4 +311,33 @@ public class DataSourceClassPathResolver extends DataSourceBaseResolver
     {
         return (getClassPathBase() + resourceLocation).replaceAll("//", "/");
     }
+
+    /**
+     * The content of a class path resource.
+     */
+    private static final class CachedResource
+    {
+        /** the content, shared by all created data sources */
+        private final byte[] content;
+
+        /** the mime type */
+        private final String mimeType;
+
+        /** the resource URL */
+        private final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param content the content
+         * @param mimeType the mime type
+         * @param name the resource URL
+         */
+        CachedResource(final byte[] content, final String mimeType, final String name)
+        {
+            this.content = content;
+            this.mimeType = mimeType;
+            this.name = name;
+        }
+    }
 }
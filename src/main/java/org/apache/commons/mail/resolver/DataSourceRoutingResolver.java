@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.resolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import javax.activation.DataSource;
+
+import org.apache.commons.mail.DataSourceResolver;
+
+/**
+ * A composite resolver remembering which resolver found a resource.
+ *
+ * <p>{@link DataSourceCompositeResolver} asks every resolver in turn, so a
+ * resource only found by the last one pays for the failed lookups of all
+ * others every time. This resolver remembers the resolver that found each
+ * location and asks it first next time. Locations no resolver found are
+ * remembered for a time to live and reported as not found without asking
+ * any resolver.
+ *
+ * <p>{@link #prefetch(Collection)} resolves a known list of resources, e.g.
+ * the images of the email templates, when the application starts. To
+ * keep the content of the resources as well, use caching resolvers such as
+ * {@link DataSourceCachingResolver} as the underlying resolvers.
+ *
+ * <p>Both caches are never evicted, so this resolver is meant for a
+ * limited set of resource locations. This class is thread-safe.
+ *
+ * @since 1.4
+ */
+public class DataSourceRoutingResolver extends DataSourceCompositeResolver
+{
+    /** The default time in milliseconds a resource not found is remembered. */
+    public static final long DEFAULT_NEGATIVE_TTL_MS = 60L * 1000;
+
+    /** the underlying resolvers */
+    private final DataSourceResolver[] resolvers;
+
+    /** the time a resource not found is remembered */
+    private final long negativeTimeToLive;
+
+    /** the index of the resolver which found a location */
+    private final Map<String, Integer> routes = new ConcurrentHashMap<String, Integer>();
+
+    /** the time until a location not found is remembered */
+    private final Map<String, Long> negatives = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Constructor using the default negative time to live.
+     *
+     * @param dataSourceResolvers the resolvers being used
+     * @param isLenient shall we ignore resources not found or throw an exception?
+     */
+    public DataSourceRoutingResolver(final DataSourceResolver[] dataSourceResolvers, final boolean isLenient)
+    {
+        this(dataSourceResolvers, isLenient, DEFAULT_NEGATIVE_TTL_MS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSourceResolvers the resolvers being used
+     * @param isLenient shall we ignore resources not found or throw an exception?
+     * @param negativeTimeToLive the time in milliseconds a resource not found is remembered, 0 to disable
+     */
+    public DataSourceRoutingResolver(final DataSourceResolver[] dataSourceResolvers, final boolean isLenient,
+        final long negativeTimeToLive)
+    {
+        super(dataSourceResolvers, isLenient);
+
+        if (negativeTimeToLive < 0)
+        {
+            throw new IllegalArgumentException("time to live must not be negative");
+        }
+
+        this.resolvers = getDataSourceResolvers();
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataSource resolve(final String resourceLocation, final boolean isLenient) throws IOException
+    {
+        DataSource result = lookup(resourceLocation, isLenient);
+
+        if (result != null || isLenient)
+        {
+            return result;
+        }
+        else
+        {
+            throw new IOException("The following resource was not found : " + resourceLocation);
+        }
+    }
+
+    /**
+     * Resolve the given locations, remembering the resolver which found
+     * each of them and the locations not found. Resources not found and
+     * failures are ignored.
+     *
+     * @param resourceLocations the locations to resolve
+     * @return the number of resources found
+     */
+    public int prefetch(final Collection<String> resourceLocations)
+    {
+        int result = 0;
+
+        for (String resourceLocation : resourceLocations)
+        {
+            try
+            {
+                if (lookup(resourceLocation, true) != null)
+                {
+                    result++;
+                }
+            }
+            catch (IOException e) // NOPMD
+            {
+                // the resource will be looked up again when it is used
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolve the given locations in the background.
+     *
+     * @param resourceLocations the locations to resolve
+     * @param executor the executor resolving the resources
+     * @return a future completed with the number of resources found
+     * @see #prefetch(Collection)
+     */
+    public CompletableFuture<Integer> prefetch(final Collection<String> resourceLocations, final Executor executor)
+    {
+        final List<String> locations = new ArrayList<String>(resourceLocations);
+        final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+
+        executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    result.complete(prefetch(locations));
+                }
+                catch (RuntimeException e)
+                {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * @return the number of locations with a known resolver
+     */
+    public int getRouteCount()
+    {
+        return routes.size();
+    }
+
+    /**
+     * @return the number of locations remembered as not found, including expired ones
+     */
+    public int getNegativeCount()
+    {
+        return negatives.size();
+    }
+
+    /**
+     * Forget all routes and locations not found.
+     */
+    public void clearCache()
+    {
+        routes.clear();
+        negatives.clear();
+    }
+
+    /**
+     * Look up a resource using the caches.
+     *
+     * @param resourceLocation the location
+     * @param isLenient passed to the underlying resolvers
+     * @return the data source or null if not found
+     * @throws IOException an underlying resolver failed
+     */
+    private DataSource lookup(final String resourceLocation, final boolean isLenient) throws IOException
+    {
+        Long expires = negatives.get(resourceLocation);
+
+        if (expires != null)
+        {
+            if (expires.longValue() > System.currentTimeMillis())
+            {
+                return null;
+            }
+            negatives.remove(resourceLocation);
+        }
+
+        Integer route = routes.get(resourceLocation);
+
+        if (route != null)
+        {
+            DataSource dataSource = resolvers[route.intValue()].resolve(resourceLocation, isLenient);
+
+            if (dataSource != null)
+            {
+                return dataSource;
+            }
+            routes.remove(resourceLocation);
+        }
+
+        for (int i = 0; i < resolvers.length; i++)
+        {
+            DataSource dataSource = resolvers[i].resolve(resourceLocation, isLenient);
+
+            if (dataSource != null)
+            {
+                routes.put(resourceLocation, Integer.valueOf(i));
+                return dataSource;
+            }
+        }
+
+        if (negativeTimeToLive > 0)
+        {
+            negatives.put(resourceLocation, Long.valueOf(System.currentTimeMillis() + negativeTimeToLive));
+        }
+
+        return null;
+    }
+}
@@ -18,21 +18,44 @@ package org.apache.commons.mail.resolver;
 
 import javax.activation.DataSource;
 import javax.activation.URLDataSource;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Creates a <code>DataSource</code> based on an URL.
+ * <p>
+ * By default every resource is downloaded to check that it exists and
+ * again whenever the email is written. If a freshness is given, HTTP and
+ * HTTPS resources are downloaded once and kept in memory together with
+ * their "ETag" and "Last-Modified" headers. After the freshness expired a
+ * conditional GET revalidates the resource, which is only downloaded again
+ * if it changed. Resources are never evicted, so this mode is meant for
+ * a limited set of resources such as the images of newsletter templates.
  *
  * @since 1.3
  * @version $Id: DataSourceUrlResolver.java 1532538 2013-10-15 21:21:18Z tn $
  */
 public class DataSourceUrlResolver extends DataSourceBaseResolver
 {
+    /** the size of the copy buffer */
+    private static final int BUFFER_SIZE = 8192;
+
     /** the base url of the resource when resolving relative paths */
     private final URL baseUrl;
 
+    /** the time in milliseconds a cached resource is used without revalidation, -1 if not caching */
+    private final long freshness;
+
+    /** the cached HTTP resources by their URL */
+    private final Map<String, CachedResource> cache = new ConcurrentHashMap<String, CachedResource>();
+
     /**
      * Constructor.
      *
@@ -42,6 +65,7 @@ public class DataSourceUrlResolver extends DataSourceBaseResolver
     {
         super();
         this.baseUrl = baseUrl;
+        this.freshness = -1;
     }
 
     /**
@@ -54,6 +78,28 @@ public class DataSourceUrlResolver extends DataSourceBaseResolver
     {
         super(lenient);
         this.baseUrl = baseUrl;
+        this.freshness = -1;
+    }
+
+    /**
+     * Constructor caching and revalidating HTTP and HTTPS resources.
+     *
+     * @param baseUrl the base URL used for resolving relative resource locations
+     * @param lenient shall we ignore resources not found or complain with an exception
+     * @param freshness the time in milliseconds a downloaded resource is used without revalidation
+     * @since 1.4
+     */
+    public DataSourceUrlResolver(final URL baseUrl, final boolean lenient, final long freshness)
+    {
+        super(lenient);
+
+        if (freshness < 0)
+        {
+            throw new IllegalArgumentException("freshness must not be negative");
+        }
+
+        this.baseUrl = baseUrl;
+        this.freshness = freshness;
     }
 
     /**
@@ -82,8 +128,16 @@ public class DataSourceUrlResolver extends DataSourceBaseResolver
             if (!isCid(resourceLocation))
             {
                 URL url = createUrl(resourceLocation);
-                result = new URLDataSource(url);
-                result.getInputStream();
+
+                if (isCaching() && isHttpUrl(url.toString()))
+                {
+                    result = resolveCached(url);
+                }
+                else
+                {
+                    result = new URLDataSource(url);
+                    result.getInputStream();
+                }
             }
 
             return result;
@@ -101,6 +155,117 @@ public class DataSourceUrlResolver extends DataSourceBaseResolver
         }
     }
 
+    /**
+     * Are HTTP resources cached and revalidated?
+     *
+     * @return true if a freshness was given
+     * @since 1.4
+     */
+    public boolean isCaching()
+    {
+        return freshness >= 0;
+    }
+
+    /**
+     * Remove all cached resources.
+     *
+     * @since 1.4
+     */
+    public void clearCache()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Resolve an HTTP resource using the cache, revalidating the cached
+     * resource with a conditional GET once it is no longer fresh.
+     *
+     * @param url the URL of the resource
+     * @return the data source reading the cached content
+     * @throws IOException downloading the resource failed
+     */
+    private DataSource resolveCached(final URL url) throws IOException
+    {
+        String key = url.toString();
+        CachedResource cached = cache.get(key);
+        long now = System.currentTimeMillis();
+
+        if (cached != null && now - cached.validated < freshness)
+        {
+            return cached.createDataSource(url);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setUseCaches(false);
+
+        if (cached != null)
+        {
+            if (cached.etag != null)
+            {
+                connection.setRequestProperty("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified > 0)
+            {
+                connection.setIfModifiedSince(cached.lastModified);
+            }
+        }
+
+        try
+        {
+            int status = connection.getResponseCode();
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+            {
+                cached = new CachedResource(cached.content, cached.contentType, cached.etag,
+                    cached.lastModified, now);
+            }
+            else if (status == HttpURLConnection.HTTP_OK)
+            {
+                cached = new CachedResource(read(connection.getInputStream()), connection.getContentType(),
+                    connection.getHeaderField("ETag"), connection.getLastModified(), now);
+            }
+            else
+            {
+                throw new IOException("The following resource returned HTTP status " + status + " : " + url);
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+
+        cache.put(key, cached);
+        return cached.createDataSource(url);
+    }
+
+    /**
+     * Read the content of a stream and close it.
+     *
+     * @param is the stream
+     * @return the content
+     * @throws IOException reading the stream failed
+     */
+    private static byte[] read(final InputStream is) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+
+            while ((length = is.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, length);
+            }
+
+            return os.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
     /**
      * Create an URL based on a base URL and a resource location suitable for loading
      * the resource.
@@ -132,4 +297,55 @@ public class DataSourceUrlResolver extends DataSourceBaseResolver
 
         return new URL(getBaseUrl(), resourceLocation.replaceAll("&amp;", "&"));
     }
+
+    /**
+     * A downloaded HTTP resource and its validators.
+     */
+    private static final class CachedResource
+    {
+        /** the content, shared by all created data sources */
+        private final byte[] content;
+
+        /** the content type */
+        private final String contentType;
+
+        /** the "ETag" header or null */
+        private final String etag;
+
+        /** the "Last-Modified" header or 0 */
+        private final long lastModified;
+
+        /** the time the resource was downloaded or revalidated */
+        private final long validated;
+
+        /**
+         * Constructor.
+         *
+         * @param content the content
+         * @param contentType the content type
+         * @param etag the "ETag" header or null
+         * @param lastModified the "Last-Modified" header or 0
+         * @param validated the time the resource was downloaded or revalidated
+         */
+        CachedResource(final byte[] content, final String contentType, final String etag,
+            final long lastModified, final long validated)
+        {
+            this.content = content;
+            this.contentType = contentType != null ? contentType : "application/octet-stream";
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validated = validated;
+        }
+
+        /**
+         * @param url the URL of the resource
+         * @return a data source reading the cached content, named like a <code>URLDataSource</code>
+         */
+        DataSource createDataSource(final URL url)
+        {
+            ByteArrayDataSource result = new ByteArrayDataSource(content, contentType);
+            result.setName(url.getFile());
+            return result;
+        }
+    }
 }
@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.SharedByteArrayInputStream;
+
+/**
+ * Reads the messages of an mbox file one at a time.
+ *
+ * <p>The file is read in large blocks and split on lines starting with
+ * "From ", the lines are found within the read buffer without copying
+ * them. The read buffer holds the message being read until its end is
+ * found, then the message is copied once into an array of exactly its
+ * size which is shared by the returned <code>MimeMessage</code>, so a
+ * large message does not make the following ones use more memory. Quoted "From " lines are unescaped according to the
+ * mboxrd format, i.e. one '&gt;' is removed from every line matching
+ * "^&gt;+From ". This is the format written by {@link MboxWriter}.
+ *
+ * <pre>
+ * MboxReader reader = new MboxReader(session, file);
+ * try
+ * {
+ *     MimeMessage message;
+ *     while ((message = reader.readMessage()) != null)
+ *     {
+ *         // process the message
+ *     }
+ * }
+ * finally
+ * {
+ *     reader.close();
+ * }
+ * </pre>
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @since 1.4
+ */
+public class MboxReader implements Closeable
+{
+    /** the size of the read buffer */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** the session used to create the messages */
+    private final Session session;
+
+    /** the mbox content */
+    private final InputStream is;
+
+    /** the read buffer, grows if a line does not fit */
+    private byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** the position of the next line in the buffer */
+    private int position;
+
+    /** the number of bytes in the buffer */
+    private int limit;
+
+    /** has the end of the stream been reached? */
+    private boolean eof;
+
+    /** the position of the current line in the buffer */
+    private int lineStart;
+
+    /** the length of the current line or -1 at the end of the file */
+    private int lineLength;
+
+    /** the position in the buffer of the message being read or -1 */
+    private int messageStart = -1;
+
+    /** the positions of the quoted lines relative to the start of the message */
+    private int[] quotes = new int[16];
+
+    /** the number of quoted lines of the message being read */
+    private int quoteCount;
+
+    /**
+     * Open an mbox file.
+     *
+     * @param session the session used to create the messages, may be null
+     * @param file the mbox file
+     * @throws IOException opening the file failed
+     */
+    public MboxReader(final Session session, final File file) throws IOException
+    {
+        this(session, new FileInputStream(file));
+    }
+
+    /**
+     * Read mbox content from a stream, which is closed by {@link #close()}.
+     *
+     * @param session the session used to create the messages, may be null
+     * @param is the mbox content
+     * @throws IOException reading the stream failed
+     */
+    public MboxReader(final Session session, final InputStream is) throws IOException
+    {
+        this.session = session;
+        this.is = is;
+
+        // skip anything before the first separator line
+        do
+        {
+            readLine();
+        }
+        while (lineLength != -1 && !isSeparator());
+    }
+
+    /**
+     * Read the next message.
+     *
+     * @return the message or null if there are no more messages
+     * @throws IOException reading the file failed
+     * @throws MessagingException creating the message failed
+     */
+    public MimeMessage readMessage() throws IOException, MessagingException
+    {
+        if (lineLength == -1)
+        {
+            return null;
+        }
+
+        // the current line is the separator of this message
+        messageStart = position;
+        quoteCount = 0;
+        int length = 0;
+        int separatorLength = 0;
+
+        while (readLine() != -1 && !isSeparator())
+        {
+            if (isQuotedSeparator())
+            {
+                addQuote(lineStart - messageStart);
+            }
+
+            length = position - messageStart;
+
+            // remember a blank line as it might separate the message from the next one
+            separatorLength = isBlank() ? lineLength : 0;
+        }
+
+        byte[] content = copyMessage(length - separatorLength);
+        messageStart = -1;
+        shrinkBuffer();
+
+        // the message keeps the content array instead of copying it
+        return new MimeMessage(session, new SharedByteArrayInputStream(content));
+    }
+
+    /**
+     * Close the underlying stream.
+     *
+     * @throws IOException closing the stream failed
+     */
+    public void close() throws IOException
+    {
+        is.close();
+    }
+
+    /**
+     * Find the next line including its line terminator in the buffer,
+     * reading more content if necessary.
+     *
+     * @return the length of the line or -1 at the end of the file
+     * @throws IOException reading the file failed
+     */
+    private int readLine() throws IOException
+    {
+        int scan = position;
+
+        while (true)
+        {
+            while (scan < limit)
+            {
+                if (buffer[scan++] == '\n')
+                {
+                    return setLine(scan);
+                }
+            }
+
+            if (eof)
+            {
+                if (scan > position)
+                {
+                    // the last line has no line terminator
+                    return setLine(scan);
+                }
+                lineLength = -1;
+                return lineLength;
+            }
+
+            // move the message read so far or the incomplete line to the
+            // start of the buffer or grow it
+            int keep = messageStart == -1 ? position : messageStart;
+            int pending = limit - keep;
+
+            if (keep > 0)
+            {
+                System.arraycopy(buffer, keep, buffer, 0, pending);
+            }
+            else if (pending == buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            if (messageStart != -1)
+            {
+                messageStart = 0;
+            }
+            scan -= keep;
+            position -= keep;
+            limit = pending;
+
+            int count = is.read(buffer, limit, buffer.length - limit);
+
+            if (count == -1)
+            {
+                eof = true;
+            }
+            else
+            {
+                limit += count;
+            }
+        }
+    }
+
+    /**
+     * Copy the message being read from the buffer, removing the quotes.
+     *
+     * @param length the length of the message in the buffer
+     * @return the message content
+     */
+    private byte[] copyMessage(final int length)
+    {
+        byte[] content = new byte[length - quoteCount];
+        int from = 0;
+        int to = 0;
+
+        for (int i = 0; i < quoteCount; i++)
+        {
+            int count = quotes[i] - from;
+            System.arraycopy(buffer, messageStart + from, content, to, count);
+            to += count;
+            from = quotes[i] + 1;
+        }
+
+        System.arraycopy(buffer, messageStart + from, content, to, length - from);
+        return content;
+    }
+
+    /**
+     * Remember the position of a '&gt;' to be removed from the message.
+     *
+     * @param offset the position relative to the start of the message
+     */
+    private void addQuote(final int offset)
+    {
+        if (quoteCount == quotes.length)
+        {
+            quotes = Arrays.copyOf(quotes, quotes.length * 2);
+        }
+        quotes[quoteCount++] = offset;
+    }
+
+    /**
+     * Release a buffer grown for a large message once the unread content
+     * fits into a buffer of the default size again.
+     */
+    private void shrinkBuffer()
+    {
+        int pending = limit - position;
+
+        if (buffer.length > BUFFER_SIZE && pending <= BUFFER_SIZE)
+        {
+            byte[] shrunk = new byte[BUFFER_SIZE];
+            System.arraycopy(buffer, position, shrunk, 0, pending);
+            buffer = shrunk;
+            position = 0;
+            limit = pending;
+        }
+    }
+
+    /**
+     * Make the content up to the given position the current line.
+     *
+     * @param end the position after the line
+     * @return the length of the line
+     */
+    private int setLine(final int end)
+    {
+        lineStart = position;
+        lineLength = end - position;
+        position = end;
+        return lineLength;
+    }
+
+    /**
+     * @return true if the current line starts a new message
+     */
+    private boolean isSeparator()
+    {
+        return startsWithFrom(0);
+    }
+
+    /**
+     * @return true if the current line matches "^&gt;+From "
+     */
+    private boolean isQuotedSeparator()
+    {
+        int i = 0;
+
+        while (i < lineLength && buffer[lineStart + i] == '>')
+        {
+            i++;
+        }
+
+        return i > 0 && startsWithFrom(i);
+    }
+
+    /**
+     * @return true if the current line contains only a line terminator
+     */
+    private boolean isBlank()
+    {
+        return (lineLength == 1 && buffer[lineStart] == '\n')
+            || (lineLength == 2 && buffer[lineStart] == '\r' && buffer[lineStart + 1] == '\n');
+    }
+
+    /**
+     * @param offset the position within the current line
+     * @return true if "From " appears at the given position
+     */
+    private boolean startsWithFrom(final int offset)
+    {
+        int i = lineStart + offset;
+
+        return lineLength >= offset + MboxWriter.FROM.length
+            && buffer[i] == 'F'
+            && buffer[i + 1] == 'r'
+            && buffer[i + 2] == 'o'
+            && buffer[i + 3] == 'm'
+            && buffer[i + 4] == ' ';
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Appends messages to an mbox file using the mboxrd format.
+ *
+ * <p>Each message is preceded by a "From " separator line containing the
+ * sender and the current date and followed by a blank line. Lines of the
+ * message matching "^&gt;*From " are quoted by prepending a '&gt;'. The
+ * messages are written as they are, without loading them into memory.
+ * Use {@link MboxReader} to read the file again.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @since 1.4
+ */
+public class MboxWriter implements Closeable
+{
+    /** the start of a separator line */
+    static final byte[] FROM = {'F', 'r', 'o', 'm', ' '};
+
+    /** the size of the write buffer */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** the sender used if a message has none */
+    private static final String DEFAULT_SENDER = "MAILER-DAEMON";
+
+    /** the mbox content */
+    private final OutputStream os;
+
+    /** formats the date of the separator line */
+    private final SimpleDateFormat dateFormat;
+
+    /**
+     * Open an mbox file for appending, creating it if necessary.
+     *
+     * @param file the mbox file
+     * @throws IOException opening the file failed
+     */
+    public MboxWriter(final File file) throws IOException
+    {
+        this(new FileOutputStream(file, true));
+    }
+
+    /**
+     * Write mbox content to a stream, which is closed by {@link #close()}.
+     *
+     * @param os the output stream
+     */
+    public MboxWriter(final OutputStream os)
+    {
+        this.os = new BufferedOutputStream(os, BUFFER_SIZE);
+        this.dateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy", Locale.US);
+        this.dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Append a message.
+     *
+     * @param message the message to append
+     * @throws IOException writing the file failed
+     * @throws MessagingException writing the message failed
+     */
+    public void append(final MimeMessage message) throws IOException, MessagingException
+    {
+        String separator = "From " + getSender(message) + " " + dateFormat.format(new Date()) + "\n";
+        os.write(separator.getBytes("US-ASCII"));
+
+        QuotingOutputStream quoting = new QuotingOutputStream(os);
+        message.writeTo(quoting);
+        quoting.finish();
+
+        os.write('\n');
+    }
+
+    /**
+     * Flush the buffered content to the file.
+     *
+     * @throws IOException writing the file failed
+     */
+    public void flush() throws IOException
+    {
+        os.flush();
+    }
+
+    /**
+     * Flush and close the file.
+     *
+     * @throws IOException writing the file failed
+     */
+    public void close() throws IOException
+    {
+        os.close();
+    }
+
+    /**
+     * Determine the envelope sender of the separator line.
+     *
+     * @param message the message
+     * @return the address of the first sender or "MAILER-DAEMON"
+     * @throws MessagingException reading the sender failed
+     */
+    private String getSender(final MimeMessage message) throws MessagingException
+    {
+        Address[] from = message.getFrom();
+
+        if (from != null && from.length > 0 && from[0] instanceof InternetAddress)
+        {
+            String address = ((InternetAddress) from[0]).getAddress();
+
+            if (address != null && address.length() > 0 && address.indexOf(' ') == -1)
+            {
+                return address;
+            }
+        }
+
+        return DEFAULT_SENDER;
+    }
+
+    /**
+     * Quotes lines matching "^&gt;*From " and makes sure the content ends
+     * with a line terminator.
+     *
+     * <p>Only the start of a line which might still match is held back,
+     * as a count of '&gt;' and the number of matched bytes of "From ", the
+     * rest of a line is passed through in one piece.
+     */
+    private static final class QuotingOutputStream extends FilterOutputStream
+    {
+        /** the buffer used to write single bytes */
+        private final byte[] single = new byte[1];
+
+        /** the number of '&gt;' held back at the start of the current line */
+        private int quotes;
+
+        /** the number of bytes of "From " held back after the quotes */
+        private int matched;
+
+        /** true if the current line cannot match and is passed through */
+        private boolean passing;
+
+        /** the last byte written */
+        private int last = '\n';
+
+        /**
+         * Constructor.
+         *
+         * @param os the mbox content
+         */
+        QuotingOutputStream(final OutputStream os)
+        {
+            super(os);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final int b) throws IOException
+        {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            int end = off + len;
+            int i = off;
+
+            while (i < end)
+            {
+                if (passing)
+                {
+                    int start = i;
+
+                    while (i < end && b[i] != '\n')
+                    {
+                        i++;
+                    }
+                    if (i < end)
+                    {
+                        // include the line terminator, the next line might match
+                        i++;
+                        passing = false;
+                    }
+
+                    out.write(b, start, i - start);
+                    continue;
+                }
+
+                byte c = b[i++];
+
+                if (c == '>' && matched == 0)
+                {
+                    quotes++;
+                }
+                else if (c == FROM[matched])
+                {
+                    if (++matched == FROM.length)
+                    {
+                        out.write('>');
+                        writeHeld();
+                        passing = true;
+                    }
+                }
+                else
+                {
+                    writeHeld();
+                    out.write(c);
+                    passing = c != '\n';
+                }
+            }
+
+            if (len > 0)
+            {
+                last = b[end - 1];
+            }
+        }
+
+        /**
+         * Write anything held back and terminate the last line.
+         *
+         * @throws IOException writing failed
+         */
+        void finish() throws IOException
+        {
+            writeHeld();
+
+            if (last != '\n')
+            {
+                out.write('\n');
+            }
+        }
+
+        /**
+         * Write the held back start of the current line.
+         *
+         * @throws IOException writing failed
+         */
+        private void writeHeld() throws IOException
+        {
+            for (; quotes > 0; quotes--)
+            {
+                out.write('>');
+            }
+
+            out.write(FROM, 0, matched);
+            matched = 0;
+        }
+    }
+}
@@ -28,11 +28,10 @@ import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimePart;
 import javax.mail.internet.MimeUtility;
 import javax.mail.util.ByteArrayDataSource;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,6 +46,9 @@ import java.util.List;
  */
 public class MimeMessageParser
 {
+    /** The size of the buffer used to read attachments */
+    private static final int BUFFER_SIZE = 8192;
+
     /** The MimeMessage to convert */
     private final MimeMessage mimeMessage;
 
@@ -59,19 +61,55 @@ public class MimeMessageParser
     /** List of attachments of MimeMessage */
     private final List<DataSource> attachmentList;
 
+    /** The plain text part not decoded yet */
+    private MimePart plainPart;
+
+    /** The HTML part not decoded yet */
+    private MimePart htmlPart;
+
+    /** Index of all non multi-part parts, only built by parseLazily() */
+    private final List<MimePartInfo> partIndex;
+
+    /** Is the content of the parts decoded when accessed */
+    private boolean lazy;
+
     /** Is this a Multipart email */
     private boolean isMultiPart;
 
+    /** Are attachments read only when accessed */
+    private final boolean lazyAttachments;
+
     /**
      * Constructs an instance with the MimeMessage to be extracted.
      *
      * @param message the message to parse
      */
     public MimeMessageParser(final MimeMessage message)
+    {
+        this(message, false);
+    }
+
+    /**
+     * Constructs an instance with the MimeMessage to be extracted.
+     *
+     * <p>If <code>lazyAttachments</code> is set, the attachments are not
+     * copied while parsing. Instead each attachment DataSource decodes the
+     * content of its part whenever its input stream is requested. For a
+     * message created from a <code>SharedInputStream</code>, e.g. by
+     * {@link MimeMessageUtils#createSharedMimeMessage(javax.mail.Session, java.io.File)},
+     * the content is then read directly from the underlying file.
+     *
+     * @param message the message to parse
+     * @param lazyAttachments read the attachments only when accessed
+     * @since 1.4
+     */
+    public MimeMessageParser(final MimeMessage message, final boolean lazyAttachments)
     {
         attachmentList = new ArrayList<DataSource>();
+        partIndex = new ArrayList<MimePartInfo>();
         this.mimeMessage = message;
         this.isMultiPart = false;
+        this.lazyAttachments = lazyAttachments;
     }
 
     /**
@@ -82,10 +120,50 @@ public class MimeMessageParser
      */
     public MimeMessageParser parse() throws Exception
     {
+        this.lazy = false;
+        this.partIndex.clear();
+        this.parse(null, mimeMessage);
+        return this;
+    }
+
+    /**
+     * Builds an index of the message parts from their headers without
+     * decoding any content. The plain text, the HTML text and the
+     * attachments are decoded when their getters are called, so reading
+     * only the headers of a message is cheap.
+     *
+     * @return this instance
+     * @throws Exception parsing the mime message failed
+     * @since 1.4
+     */
+    public MimeMessageParser parseLazily() throws Exception
+    {
+        this.lazy = true;
+        this.partIndex.clear();
         this.parse(null, mimeMessage);
         return this;
     }
 
+    /**
+     * Walks the parts of the message and passes the decoded content of
+     * every single part to the visitor. Nothing is retained by this
+     * parser, so the memory needed does not depend on the message size
+     * when the message was created from a <code>SharedInputStream</code>,
+     * e.g. by {@link MimeMessageUtils#createSharedMimeMessage(javax.mail.Session, java.io.File)}.
+     *
+     * @param visitor receives the parts in the order they appear in the message
+     * @throws Exception parsing the mime message failed or the visitor failed
+     * @since 1.4
+     */
+    public void parse(MimePartVisitor visitor) throws Exception
+    {
+        if (visitor == null)
+        {
+            throw new IllegalArgumentException("no visitor supplied");
+        }
+        this.visit(mimeMessage, 0, visitor);
+    }
+
     /**
      * @return the 'to' recipients of the message
      * @throws Exception determining the recipients failed
@@ -170,17 +248,36 @@ public class MimeMessageParser
     protected void parse(Multipart parent, MimePart part)
         throws MessagingException, IOException
     {
-        if (part.isMimeType("text/plain") && (plainContent == null)
+        if (lazy && !part.isMimeType("multipart/*"))
+        {
+            partIndex.add(new MimePartInfo(part, getDepth(parent)));
+        }
+
+        if (part.isMimeType("text/plain") && !hasPlainContent()
                 && (!MimePart.ATTACHMENT.equalsIgnoreCase(part.getDisposition())))
         {
-            plainContent = (String) part.getContent();
+            if (lazy)
+            {
+                plainPart = part;
+            }
+            else
+            {
+                plainContent = (String) part.getContent();
+            }
         }
         else
         {
-            if (part.isMimeType("text/html") && (htmlContent == null)
+            if (part.isMimeType("text/html") && !hasHtmlContent()
                     && (!MimePart.ATTACHMENT.equalsIgnoreCase(part.getDisposition())))
             {
-                htmlContent = (String) part.getContent();
+                if (lazy)
+                {
+                    htmlPart = part;
+                }
+                else
+                {
+                    htmlContent = (String) part.getContent();
+                }
             }
             else
             {
@@ -205,6 +302,42 @@ public class MimeMessageParser
         }
     }
 
+    /**
+     * Passes a part, or the parts of a multi-part, to the visitor.
+     *
+     * @param part the current part
+     * @param depth the number of enclosing multi-parts
+     * @param visitor the visitor
+     * @throws Exception parsing the part failed or the visitor failed
+     */
+    private void visit(MimePart part, int depth, MimePartVisitor visitor) throws Exception
+    {
+        if (part.isMimeType("multipart/*"))
+        {
+            this.isMultiPart = true;
+            Multipart mp = (Multipart) part.getContent();
+            int count = mp.getCount();
+
+            for (int i = 0; i < count; i++)
+            {
+                visit((MimeBodyPart) mp.getBodyPart(i), depth + 1, visitor);
+            }
+        }
+        else
+        {
+            InputStream is = part.getInputStream();
+
+            try
+            {
+                visitor.visit(new MimePartInfo(part, depth), is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+    }
+
     /**
      * Parses the MimePart to create a DataSource.
      *
@@ -220,9 +353,15 @@ public class MimeMessageParser
         DataHandler dataHandler = part.getDataHandler();
         DataSource dataSource = dataHandler.getDataSource();
         String contentType = getBaseMimeType(dataSource.getContentType());
+        String dataSourceName = getDataSourceName(part, dataSource);
+
+        if (lazyAttachments || lazy)
+        {
+            return new PartDataSource(part, contentType, dataSourceName);
+        }
+
         byte[] content = this.getContent(dataSource.getInputStream());
         ByteArrayDataSource result = new ByteArrayDataSource(content, contentType);
-        String dataSourceName = getDataSourceName(part, dataSource);
 
         result.setName(dataSourceName);
         return result;
@@ -240,9 +379,20 @@ public class MimeMessageParser
         return isMultiPart;
     }
 
-    /** @return Returns the plainContent if any */
+    /**
+     * Get the plain text. After {@link #parseLazily()} the text is decoded
+     * by the first call.
+     *
+     * @return Returns the plainContent if any
+     * @throws IllegalStateException decoding the text failed
+     */
     public String getPlainContent()
     {
+        if (plainPart != null)
+        {
+            plainContent = decodeText(plainPart);
+            plainPart = null;
+        }
         return plainContent;
     }
 
@@ -252,22 +402,43 @@ public class MimeMessageParser
         return attachmentList;
     }
 
-    /** @return Returns the htmlContent if any */
+    /**
+     * Get the HTML text. After {@link #parseLazily()} the text is decoded
+     * by the first call.
+     *
+     * @return Returns the htmlContent if any
+     * @throws IllegalStateException decoding the text failed
+     */
     public String getHtmlContent()
     {
+        if (htmlPart != null)
+        {
+            htmlContent = decodeText(htmlPart);
+            htmlPart = null;
+        }
         return htmlContent;
     }
 
+    /**
+     * @return the parts of the message in the order they were found, excluding
+     *         multi-parts, or an empty list unless {@link #parseLazily()} was called
+     * @since 1.4
+     */
+    public List<MimePartInfo> getPartIndex()
+    {
+        return partIndex;
+    }
+
     /** @return true if a plain content is available */
     public boolean hasPlainContent()
     {
-        return this.plainContent != null;
+        return this.plainContent != null || this.plainPart != null;
     }
 
     /** @return true if HTML content is available */
     public boolean hasHtmlContent()
     {
-        return this.htmlContent != null;
+        return this.htmlContent != null || this.htmlPart != null;
     }
 
     /** @return true if attachments are available */
@@ -339,23 +510,69 @@ public class MimeMessageParser
     private byte[] getContent(InputStream is)
         throws IOException
     {
-        int ch;
-        byte[] result;
-
+        int length;
+        byte[] buffer = new byte[BUFFER_SIZE];
         ByteArrayOutputStream os = new ByteArrayOutputStream();
-        BufferedInputStream isReader = new BufferedInputStream(is);
-        BufferedOutputStream osWriter = new BufferedOutputStream(os);
 
-        while ((ch = isReader.read()) != -1)
+        try
         {
-            osWriter.write(ch);
+            while ((length = is.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, length);
+            }
+        }
+        finally
+        {
+            is.close();
         }
 
-        osWriter.flush();
-        result = os.toByteArray();
-        osWriter.close();
+        return os.toByteArray();
+    }
 
-        return result;
+    /**
+     * Decode the text of a part deferred by {@link #parseLazily()}.
+     *
+     * @param part the text part
+     * @return the decoded text
+     */
+    private String decodeText(final MimePart part)
+    {
+        try
+        {
+            return (String) part.getContent();
+        }
+        catch (MessagingException me)
+        {
+            throw new IllegalStateException("Decoding the text failed", me);
+        }
+        catch (IOException ioe)
+        {
+            throw new IllegalStateException("Decoding the text failed", ioe);
+        }
+    }
+
+    /**
+     * Determine the number of multi-parts enclosing the children of the
+     * given multi-part.
+     *
+     * @param parent the parent multi-part or null
+     * @return the nesting level
+     */
+    private int getDepth(final Multipart parent)
+    {
+        int depth = 0;
+        Part current = parent != null ? parent.getParent() : null;
+
+        while (current != null)
+        {
+            depth++;
+            Multipart multipart = current instanceof javax.mail.BodyPart
+                ? ((javax.mail.BodyPart) current).getParent()
+                : null;
+            current = multipart != null ? multipart.getParent() : null;
+        }
+
+        return depth;
     }
 
     /**
@@ -376,4 +593,66 @@ public class MimeMessageParser
             return fullMimeType;
         }
     }
+
+    /**
+     * A DataSource decoding the content of a part whenever it is read.
+     */
+    private static final class PartDataSource implements DataSource
+    {
+        /** the part providing the content */
+        private final MimePart part;
+
+        /** the base content type */
+        private final String contentType;
+
+        /** the name of the attachment */
+        private final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param part the part providing the content
+         * @param contentType the base content type
+         * @param name the name of the attachment
+         */
+        PartDataSource(final MimePart part, final String contentType, final String name)
+        {
+            this.part = part;
+            this.contentType = contentType;
+            this.name = name;
+        }
+
+        /** {@inheritDoc} */
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        /** {@inheritDoc} */
+        public InputStream getInputStream() throws IOException
+        {
+            try
+            {
+                return part.getInputStream();
+            }
+            catch (MessagingException me)
+            {
+                IOException ioe = new IOException("Reading the attachment failed");
+                ioe.initCause(me);
+                throw ioe;
+            }
+        }
+
+        /** {@inheritDoc} */
+        public String getName()
+        {
+            return name;
+        }
+
+        /** {@inheritDoc} */
+        public OutputStream getOutputStream() throws IOException
+        {
+            throw new IOException("The attachment is read-only");
+        }
+    }
 }
@@ -98,6 +98,36 @@ public final class MimeMessageUtils
         }
     }
 
+    /**
+     * Create a MimeMessage whose parts are read from the file on demand
+     * instead of being copied into memory. The file must not be changed
+     * while the message is in use. It is only open while the message or
+     * one of its parts is being read, so no file descriptor is held by
+     * the returned message.
+     *
+     * @param session the mail session
+     * @param source the input data
+     * @return the MimeMessage
+     * @throws MessagingException creating the MimeMessage failed
+     * @throws IOException opening the file failed
+     * @since 1.4
+     */
+    public static MimeMessage createSharedMimeMessage(Session session, File source)
+        throws MessagingException, IOException
+    {
+        OnDemandFileInputStream is = new OnDemandFileInputStream(source);
+
+        try
+        {
+            return new MimeMessage(session, is);
+        }
+        finally
+        {
+            // the message keeps its own streams opening the file when read
+            is.close();
+        }
+    }
+
     /**
      * Create a MimeMessage.
      *
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.util;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimePart;
+
+/**
+ * Describes a single (non multi-part) part of a parsed MimeMessage
+ * using its headers only. The content of the part is not read.
+ *
+ * @since 1.4
+ */
+public final class MimePartInfo
+{
+    /** the described part */
+    private final MimePart part;
+
+    /** the content type */
+    private final String contentType;
+
+    /** the disposition */
+    private final String disposition;
+
+    /** the file name */
+    private final String fileName;
+
+    /** the size of the encoded content */
+    private final int size;
+
+    /** the nesting level */
+    private final int depth;
+
+    /**
+     * Constructor.
+     *
+     * @param part the described part
+     * @param depth the number of enclosing multi-parts
+     * @throws MessagingException reading the headers failed
+     */
+    MimePartInfo(final MimePart part, final int depth) throws MessagingException
+    {
+        this.part = part;
+        this.contentType = part.getContentType();
+        this.disposition = part.getDisposition();
+        this.fileName = part.getFileName();
+        this.size = part.getSize();
+        this.depth = depth;
+    }
+
+    /**
+     * @return the described part, e.g. to read its content
+     */
+    public MimePart getPart()
+    {
+        return part;
+    }
+
+    /**
+     * @return the content type including its parameters
+     */
+    public String getContentType()
+    {
+        return contentType;
+    }
+
+    /**
+     * @return the disposition or null if none was given
+     */
+    public String getDisposition()
+    {
+        return disposition;
+    }
+
+    /**
+     * @return the undecoded file name or null if none was given
+     */
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+    /**
+     * @return the size of the transfer encoded content in bytes or -1 if unknown
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of enclosing multi-parts, 0 for a single-part message
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return contentType + (fileName != null ? " (" + fileName + ", " : " (") + size + " bytes)";
+    }
+}
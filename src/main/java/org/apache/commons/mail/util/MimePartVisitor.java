@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.util;
+
+import java.io.InputStream;
+
+/**
+ * Receives the parts of a message walked by
+ * {@link MimeMessageParser#parse(MimePartVisitor)}.
+ *
+ * @since 1.4
+ */
+public interface MimePartVisitor
+{
+    /**
+     * Visit a single (non multi-part) part. The content stream is only
+     * valid during this call and is closed afterwards; it does not need
+     * to be read completely.
+     *
+     * @param part the headers of the part
+     * @param content the decoded content of the part
+     * @throws Exception processing the part failed, stops the parsing
+     */
+    void visit(MimePartInfo part, InputStream content) throws Exception;
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import javax.mail.internet.SharedInputStream;
+
+/**
+ * A <code>SharedInputStream</code> reading a range of a file which is
+ * only opened once the stream is actually read.
+ *
+ * <p>JavaMail keeps the streams created by {@link #newStream(long, long)}
+ * as the content of a message and its parts. In contrast to
+ * <code>javax.mail.util.SharedFileInputStream</code>, where all these
+ * streams share one open file until the root stream is closed or garbage
+ * collected, every stream opens the file by itself when it is read and
+ * closes it again in {@link #close()}. Streams which are only kept but
+ * never read do not hold a file descriptor.
+ *
+ * @since 1.4
+ */
+final class OnDemandFileInputStream extends InputStream implements SharedInputStream
+{
+    /** the size of the read buffer */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** the file */
+    private final File file;
+
+    /** the position in the file this stream starts at */
+    private final long start;
+
+    /** the position in the file this stream ends at, exclusive */
+    private final long end;
+
+    /** the current position in the file */
+    private long position;
+
+    /** the marked position in the file */
+    private long markPosition;
+
+    /** the file opened on the first read or null */
+    private RandomAccessFile in;
+
+    /** the read buffer */
+    private byte[] buffer;
+
+    /** the position in the file of the first buffered byte */
+    private long bufferStart;
+
+    /** the number of buffered bytes */
+    private int bufferCount;
+
+    /** has the stream been closed? */
+    private boolean closed;
+
+    /**
+     * Constructor for a stream reading the whole file.
+     *
+     * @param file the file
+     * @throws FileNotFoundException the file does not exist or is not a regular file
+     */
+    OnDemandFileInputStream(final File file) throws FileNotFoundException
+    {
+        this(file, 0, file.length());
+
+        if (!file.isFile() || !file.canRead())
+        {
+            throw new FileNotFoundException(file.getPath());
+        }
+    }
+
+    /**
+     * Constructor for a stream reading a range of a file.
+     *
+     * @param file the file
+     * @param start the position in the file to start at
+     * @param end the position in the file to end at, exclusive
+     */
+    private OnDemandFileInputStream(final File file, final long start, final long end)
+    {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.position = start;
+        this.markPosition = start;
+    }
+
+    /** {@inheritDoc} */
+    public long getPosition()
+    {
+        return position - start;
+    }
+
+    /** {@inheritDoc} */
+    public InputStream newStream(final long newStart, final long newEnd)
+    {
+        if (newStart < 0)
+        {
+            throw new IllegalArgumentException("start < 0");
+        }
+
+        long absoluteEnd = newEnd == -1 ? end : Math.min(end, start + newEnd);
+        return new OnDemandFileInputStream(file, Math.min(start + newStart, absoluteEnd), absoluteEnd);
+    }
+
+    @Override
+    public synchronized int read() throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+
+        return buffer[(int) (position++ - bufferStart)] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!fill())
+        {
+            return -1;
+        }
+
+        int count = (int) Math.min(len, bufferStart + bufferCount - position);
+        System.arraycopy(buffer, (int) (position - bufferStart), b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public synchronized long skip(final long n) throws IOException
+    {
+        ensureOpen();
+
+        long count = Math.max(0, Math.min(n, end - position));
+        position += count;
+        return count;
+    }
+
+    @Override
+    public synchronized int available() throws IOException
+    {
+        ensureOpen();
+
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit)
+    {
+        markPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException
+    {
+        ensureOpen();
+
+        position = markPosition;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        closed = true;
+        buffer = null;
+
+        if (in != null)
+        {
+            try
+            {
+                in.close();
+            }
+            finally
+            {
+                in = null;
+            }
+        }
+    }
+
+    /**
+     * Make sure the byte at the current position is buffered, opening the
+     * file if necessary.
+     *
+     * @return false if the end of the stream is reached
+     * @throws IOException the stream is closed or reading failed
+     */
+    private boolean fill() throws IOException
+    {
+        ensureOpen();
+
+        if (position >= end)
+        {
+            return false;
+        }
+        if (buffer != null && position >= bufferStart && position < bufferStart + bufferCount)
+        {
+            return true;
+        }
+
+        if (in == null)
+        {
+            in = new RandomAccessFile(file, "r");
+            buffer = new byte[(int) Math.min(BUFFER_SIZE, end - start)];
+        }
+
+        in.seek(position);
+        int count = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+
+        if (count <= 0)
+        {
+            // the file was truncated
+            return false;
+        }
+
+        bufferStart = position;
+        bufferCount = count;
+        return true;
+    }
+
+    /**
+     * @throws IOException the stream is closed
+     */
+    private void ensureOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.mail.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Parses many messages, e.g. a directory of EML files, in parallel.
+ *
+ * <p>Every message is read with
+ * {@link MimeMessageUtils#createMimeMessage(Session, File)} using a shared
+ * session and parsed by {@link #parse(MimeMessage)}. At most
+ * <code>maxInFlight</code> messages are read or waiting to be handled at any
+ * time, which bounds the memory needed regardless of the number of files.
+ * The results are passed to the {@link Handler} on the calling thread,
+ * either in the order of the sources or as soon as they are available.
+ *
+ * <pre>
+ * ParallelMimeMessageParser pipeline = new ParallelMimeMessageParser(session, 4, 16);
+ * pipeline.parse(directory, true, new ParallelMimeMessageParser.Handler()
+ * {
+ *     public void handle(ParallelMimeMessageParser.Result result)
+ *     {
+ *         // use result.getParser() or result.getException()
+ *     }
+ * });
+ * </pre>
+ *
+ * @since 1.4
+ */
+public class ParallelMimeMessageParser
+{
+    /** the session shared by all messages */
+    private final Session session;
+
+    /** the executor or null to create a pool per run */
+    private final Executor executor;
+
+    /** the parallelism of a pool created per run */
+    private final int parallelism;
+
+    /** the maximum number of messages in flight */
+    private final int maxInFlight;
+
+    /**
+     * Constructor using a fork-join pool created for each run.
+     *
+     * @param session the session shared by all messages, may be null
+     * @param parallelism the number of threads parsing messages
+     * @param maxInFlight the maximum number of messages parsed or waiting to be handled
+     */
+    public ParallelMimeMessageParser(final Session session, final int parallelism, final int maxInFlight)
+    {
+        this(session, null, parallelism, maxInFlight);
+    }
+
+    /**
+     * Constructor using the given executor, which is not shut down.
+     *
+     * @param session the session shared by all messages, may be null
+     * @param executor the executor parsing messages
+     * @param maxInFlight the maximum number of messages parsed or waiting to be handled
+     */
+    public ParallelMimeMessageParser(final Session session, final Executor executor, final int maxInFlight)
+    {
+        this(session, executor, 1, maxInFlight);
+
+        if (executor == null)
+        {
+            throw new IllegalArgumentException("no executor supplied");
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param session the session shared by all messages
+     * @param executor the executor or null
+     * @param parallelism the parallelism of a pool created per run
+     * @param maxInFlight the maximum number of messages in flight
+     */
+    private ParallelMimeMessageParser(final Session session, final Executor executor, final int parallelism,
+        final int maxInFlight)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (maxInFlight < 1)
+        {
+            throw new IllegalArgumentException("maximum number of messages in flight must be at least 1");
+        }
+
+        this.session = session;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Parse all files of a directory in the order of their names.
+     * Sub-directories are ignored.
+     *
+     * @param directory the directory containing the messages
+     * @param ordered pass the results in the order of the file names
+     * @param handler receives the results
+     * @throws Exception the handler failed or the directory could not be read
+     */
+    public void parse(final File directory, final boolean ordered, final Handler handler) throws Exception
+    {
+        File[] files = directory.listFiles();
+
+        if (files == null)
+        {
+            throw new IOException("Unable to list the directory " + directory);
+        }
+
+        Arrays.sort(files);
+        List<File> sources = new ArrayList<File>(files.length);
+
+        for (File file : files)
+        {
+            if (file.isFile())
+            {
+                sources.add(file);
+            }
+        }
+
+        parse(sources.iterator(), ordered, handler);
+    }
+
+    /**
+     * Parse the given files. The iterator is only used by the calling
+     * thread.
+     *
+     * @param sources the files containing the messages
+     * @param ordered pass the results in the iteration order of the sources
+     * @param handler receives the results
+     * @throws Exception the handler failed, which stops the run
+     */
+    public void parse(final Iterator<File> sources, final boolean ordered, final Handler handler) throws Exception
+    {
+        if (handler == null)
+        {
+            throw new IllegalArgumentException("no handler supplied");
+        }
+
+        ForkJoinPool pool = executor == null ? new ForkJoinPool(parallelism) : null;
+        Executor target = pool != null ? pool : executor;
+        // only unordered runs need to know which task completes first
+        CompletionService<Result> completionService = ordered ? null : new ExecutorCompletionService<Result>(target);
+        LinkedList<Future<Result>> pending = new LinkedList<Future<Result>>();
+
+        try
+        {
+            while (sources.hasNext())
+            {
+                if (pending.size() == maxInFlight)
+                {
+                    handler.handle(next(completionService, pending));
+                }
+
+                final File source = sources.next();
+                pending.add(submit(target, completionService, new Callable<Result>()
+                {
+                    public Result call()
+                    {
+                        return parse(source);
+                    }
+                }));
+            }
+
+            while (!pending.isEmpty())
+            {
+                handler.handle(next(completionService, pending));
+            }
+        }
+        finally
+        {
+            for (Future<Result> future : pending)
+            {
+                future.cancel(true);
+            }
+            if (pool != null)
+            {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Parse a single message. Override this method to use e.g.
+     * {@link MimeMessageParser#parseLazily()}.
+     *
+     * @param message the message to parse
+     * @return the parser containing the result
+     * @throws Exception parsing the message failed
+     */
+    protected MimeMessageParser parse(final MimeMessage message) throws Exception
+    {
+        return new MimeMessageParser(message).parse();
+    }
+
+    /**
+     * Read and parse a single file.
+     *
+     * @param source the file
+     * @return the result
+     */
+    private Result parse(final File source)
+    {
+        try
+        {
+            return new Result(source, parse(MimeMessageUtils.createMimeMessage(session, source)), null);
+        }
+        catch (Exception e)
+        {
+            return new Result(source, null, e);
+        }
+    }
+
+    /**
+     * Submit a task to the completion service or, for an ordered run,
+     * directly to the executor.
+     *
+     * @param target the executor
+     * @param completionService the completion service or null for an ordered run
+     * @param task the task
+     * @return the future of the task
+     */
+    private Future<Result> submit(final Executor target, final CompletionService<Result> completionService,
+        final Callable<Result> task)
+    {
+        if (completionService != null)
+        {
+            return completionService.submit(task);
+        }
+
+        FutureTask<Result> future = new FutureTask<Result>(task);
+        target.execute(future);
+        return future;
+    }
+
+    /**
+     * Wait for the next result to pass to the handler.
+     *
+     * @param completionService the completion service or null to wait for
+     *        the oldest task instead of the first completed one
+     * @param pending the pending tasks in submission order
+     * @return the result
+     * @throws Exception waiting was interrupted
+     */
+    private Result next(final CompletionService<Result> completionService, final LinkedList<Future<Result>> pending)
+        throws Exception
+    {
+        Future<Result> future;
+
+        if (completionService == null)
+        {
+            future = pending.removeFirst();
+        }
+        else
+        {
+            future = completionService.take();
+            pending.remove(future);
+        }
+
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            // parse(File) catches all exceptions, so this is an Error
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Receives the parsed messages.
+     */
+    public interface Handler
+    {
+        /**
+         * Handle a parsed message.
+         *
+         * @param result the result
+         * @throws Exception handling failed, which stops the run
+         */
+        void handle(Result result) throws Exception;
+    }
+
+    /**
+     * The outcome of parsing a single message.
+     */
+    public static final class Result
+    {
+        /** the source of the message */
+        private final File source;
+
+        /** the parser or null if parsing failed */
+        private final MimeMessageParser parser;
+
+        /** the failure or null */
+        private final Exception exception;
+
+        /**
+         * Constructor.
+         *
+         * @param source the source of the message
+         * @param parser the parser or null
+         * @param exception the failure or null
+         */
+        Result(final File source, final MimeMessageParser parser, final Exception exception)
+        {
+            this.source = source;
+            this.parser = parser;
+            this.exception = exception;
+        }
+
+        /**
+         * @return the source of the message
+         */
+        public File getSource()
+        {
+            return source;
+        }
+
+        /**
+         * @return the parser containing the parsed message or null if parsing failed
+         */
+        public MimeMessageParser getParser()
+        {
+            return parser;
+        }
+
+        /**
+         * @return the failure or null if the message was parsed
+         */
+        public Exception getException()
+        {
+            return exception;
+        }
+
+        /**
+         * @return true if the message was parsed
+         */
+        public boolean isSuccess()
+        {
+            return exception == null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.subethamail.wiser.Wiser;
+
+/*
+ * BulkMailerTest submits many emails to an in-process SMTP server and checks
+ * the counters of the mailer
+ */
+public class BulkMailerTest extends TestCase {
+
+	private static final int PORT = 2528;
+	private Wiser wiser;
+
+	@Override
+	protected void setUp() {
+		wiser = new Wiser();
+		wiser.setPort(PORT);
+		wiser.start();
+	}
+
+	private SimpleEmail createEmail(int i) throws EmailException {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName("localhost");
+		email.setSmtpPort(PORT);
+		email.setFrom("user1@gmail.com");
+		email.addTo("user" + i + "@gmail.com");
+		email.setSubject("bulk");
+		email.setMsg("bulk message " + i);
+		return email;
+	}
+
+	/*
+	 * testSubmit() sends twenty emails with at most two concurrent sends and
+	 * ensures all of them arrive
+	 */
+	public void testSubmit() throws Exception {
+		BulkMailer mailer = new BulkMailer(5, 2, null, new TransportPool());
+		List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(mailer.submit(createEmail(i)));
+		}
+		mailer.shutdown();
+		assertTrue(mailer.awaitTermination(30, TimeUnit.SECONDS));
+
+		for (CompletableFuture<String> future : futures) {
+			assertNotNull(future.get());
+		}
+		assertEquals(20, wiser.getMessages().size());
+		assertEquals(20, mailer.getSentCount());
+		assertEquals(0, mailer.getFailedCount());
+		assertEquals(0, mailer.getQueuedCount());
+		assertEquals(0, mailer.getActiveCount());
+	}
+
+	/*
+	 * testSubmitAfterShutdown() ensures a shut down mailer refuses new emails
+	 */
+	public void testSubmitAfterShutdown() throws Exception {
+		BulkMailer mailer = new BulkMailer();
+		mailer.shutdown();
+		assertTrue(mailer.awaitTermination(1, TimeUnit.SECONDS));
+		try {
+			mailer.trySubmit(createEmail(1));
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals("The mailer is already shut down", e.getMessage());
+		}
+	}
+
+	@Override
+	protected void tearDown() {
+		wiser.stop();
+	}
+}
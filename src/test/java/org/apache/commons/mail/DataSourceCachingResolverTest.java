@@ -0,0 +1,90 @@
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.activation.DataSource;
+import javax.mail.util.ByteArrayDataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.resolver.DataSourceCachingResolver;
+
+/*
+ * DataSourceCachingResolverTest resolves resources through a caching
+ * resolver and checks its statistics
+ */
+public class DataSourceCachingResolverTest extends TestCase {
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final DataSourceResolver resolver = new DataSourceResolver() {
+		public DataSource resolve(String resourceLocation) throws IOException {
+			return resolve(resourceLocation, false);
+		}
+
+		public DataSource resolve(String resourceLocation, boolean isLenient) throws IOException {
+			calls.incrementAndGet();
+			if (resourceLocation.startsWith("missing")) {
+				return null;
+			}
+			ByteArrayDataSource ds = new ByteArrayDataSource(new byte[100], "image/gif");
+			ds.setName(resourceLocation);
+			return ds;
+		}
+	};
+
+	/*
+	 * testCache() resolves each resource once
+	 */
+	public void testCache() throws Exception {
+		DataSourceCachingResolver cache = new DataSourceCachingResolver(resolver);
+		for (int i = 0; i < 3; i++) {
+			DataSource ds = cache.resolve("logo.gif");
+			assertEquals("logo.gif", ds.getName());
+			assertEquals("image/gif", ds.getContentType());
+			assertEquals(100, ds.getInputStream().available());
+		}
+		assertNull(cache.resolve("missing.gif", true));
+		assertNull(cache.resolve("missing.gif", true));
+
+		assertEquals(3, calls.get());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+		assertEquals(1, cache.size());
+		assertEquals(100, cache.getCachedBytes());
+	}
+
+	/*
+	 * testEviction() evicts the least recently used resources
+	 */
+	public void testEviction() throws Exception {
+		DataSourceCachingResolver cache = new DataSourceCachingResolver(resolver, 250, 0);
+		cache.resolve("a.gif");
+		cache.resolve("b.gif");
+		cache.resolve("a.gif");
+		cache.resolve("c.gif");
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+
+		/* b.gif was evicted, a.gif was used more recently */
+		cache.resolve("a.gif");
+		assertEquals(3, calls.get());
+		cache.resolve("b.gif");
+		assertEquals(4, calls.get());
+	}
+
+	/*
+	 * testExpiry() resolves expired resources again
+	 */
+	public void testExpiry() throws Exception {
+		DataSourceCachingResolver cache = new DataSourceCachingResolver(resolver, 1000, 1);
+		cache.resolve("a.gif");
+		Thread.sleep(10);
+		cache.resolve("a.gif");
+
+		assertEquals(2, calls.get());
+		assertEquals(1, cache.getEvictionCount());
+	}
+}
@@ -0,0 +1,93 @@
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.activation.DataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.mail.resolver.DataSourceClassPathResolver;
+
+/*
+ * DataSourceClassPathResolverTest resolves the compiled test classes and
+ * checks that their content is cached if caching is enabled
+ */
+public class DataSourceClassPathResolverTest extends TestCase {
+
+	private final DataSourceClassPathResolver resolver = new DataSourceClassPathResolver("/org/apache/commons/mail/", true, true);
+
+	/*
+	 * testResolve() reads the resource once and returns its content every time
+	 */
+	public void testResolve() throws Exception {
+		byte[] expected = read(getClass().getResourceAsStream("EmailTest.class"));
+
+		for (int i = 0; i < 2; i++) {
+			DataSource ds = resolver.resolve("EmailTest.class");
+			assertTrue(ds.getName().endsWith("org/apache/commons/mail/EmailTest.class"));
+			assertEquals("application/octet-stream", ds.getContentType());
+			assertTrue(Arrays.equals(expected, read(ds.getInputStream())));
+		}
+		assertEquals(1, resolver.getCacheSize());
+
+		assertNull(resolver.resolve("missing.gif"));
+		assertEquals(1, resolver.getCacheSize());
+	}
+
+	/*
+	 * testWarmUp() loads the resources found in advance
+	 */
+	public void testWarmUp() throws Exception {
+		assertEquals(2, resolver.warmUp(Arrays.asList("EmailTest.class", "TemplateTest.class", "missing.gif")));
+		assertEquals(2, resolver.getCacheSize());
+
+		try {
+			resolver.warmUp("/missing-manifest.txt");
+			fail("missing manifest");
+		} catch (IOException e) {
+			/* expected */
+		}
+	}
+
+	/*
+	 * testWarmUpManifest() loads the resources listed in a manifest, skipping
+	 * comments and blank lines and trimming the locations
+	 */
+	public void testWarmUpManifest() throws Exception {
+		assertEquals(2, resolver.warmUp("/org/apache/commons/mail/warmup-manifest.txt"));
+		assertEquals(2, resolver.getCacheSize());
+
+		byte[] expected = read(getClass().getResourceAsStream("TemplateTest.class"));
+		assertTrue(Arrays.equals(expected, read(resolver.resolve("TemplateTest.class").getInputStream())));
+		assertEquals(2, resolver.getCacheSize());
+	}
+
+	/*
+	 * testUncached() reads the resource every time unless caching is enabled
+	 */
+	public void testUncached() throws Exception {
+		DataSourceClassPathResolver uncached = new DataSourceClassPathResolver("/org/apache/commons/mail/", true);
+		byte[] expected = read(getClass().getResourceAsStream("EmailTest.class"));
+
+		assertTrue(Arrays.equals(expected, read(uncached.resolve("EmailTest.class").getInputStream())));
+		assertEquals(0, uncached.getCacheSize());
+
+		try {
+			uncached.warmUp(Arrays.asList("EmailTest.class"));
+			fail("caching is disabled");
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+	}
+
+	private static byte[] read(InputStream is) throws IOException {
+		try {
+			return IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.activation.DataSource;
+import javax.mail.util.ByteArrayDataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.resolver.DataSourceRoutingResolver;
+
+/*
+ * DataSourceRoutingResolverTest remembers which resolver found a resource
+ */
+public class DataSourceRoutingResolverTest extends TestCase {
+
+	private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+	private DataSourceResolver createResolver(final String name, final String prefix) {
+		return new DataSourceResolver() {
+			public DataSource resolve(String resourceLocation) throws IOException {
+				return resolve(resourceLocation, true);
+			}
+
+			public DataSource resolve(String resourceLocation, boolean isLenient) throws IOException {
+				calls.add(name + ":" + resourceLocation);
+				if (!resourceLocation.startsWith(prefix)) {
+					return null;
+				}
+				return new ByteArrayDataSource(new byte[1], "image/png");
+			}
+		};
+	}
+
+	private DataSourceRoutingResolver createRoutingResolver() {
+		return new DataSourceRoutingResolver(new DataSourceResolver[] { createResolver("classpath", "cp/"),
+				createResolver("url", "http://") }, true, 60000);
+	}
+
+	/*
+	 * testRoute() asks the resolver which found the resource first
+	 */
+	public void testRoute() throws Exception {
+		DataSourceRoutingResolver resolver = createRoutingResolver();
+		assertNotNull(resolver.resolve("http://host/logo.png"));
+		assertNotNull(resolver.resolve("http://host/logo.png"));
+
+		assertEquals(Arrays.asList("classpath:http://host/logo.png", "url:http://host/logo.png",
+				"url:http://host/logo.png"), calls);
+		assertEquals(1, resolver.getRouteCount());
+	}
+
+	/*
+	 * testNegative() remembers resources not found
+	 */
+	public void testNegative() throws Exception {
+		DataSourceRoutingResolver resolver = createRoutingResolver();
+		assertNull(resolver.resolve("missing.png"));
+		assertNull(resolver.resolve("missing.png"));
+		assertEquals(2, calls.size());
+		assertEquals(1, resolver.getNegativeCount());
+
+		try {
+			resolver.resolve("missing.png", false);
+			fail("Should have thrown an exception");
+		} catch (IOException e) {
+			assertEquals(2, calls.size());
+		}
+	}
+
+	/*
+	 * testPrefetch() resolves the known resources in the background
+	 */
+	public void testPrefetch() throws Exception {
+		DataSourceRoutingResolver resolver = createRoutingResolver();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			int found = resolver.prefetch(Arrays.asList("cp/logo.png", "http://host/a.png", "missing.png"), executor)
+					.get(5, TimeUnit.SECONDS);
+			assertEquals(2, found);
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(2, resolver.getRouteCount());
+		assertEquals(1, resolver.getNegativeCount());
+
+		calls.clear();
+		resolver.resolve("http://host/a.png");
+		assertEquals(Arrays.asList("url:http://host/a.png"), calls);
+	}
+}
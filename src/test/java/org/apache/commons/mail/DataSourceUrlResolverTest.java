@@ -0,0 +1,112 @@
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.activation.DataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.resolver.DataSourceUrlResolver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * DataSourceUrlResolverTest revalidates cached resources against a local
+ * HTTP server
+ */
+public class DataSourceUrlResolverTest extends TestCase {
+
+	private HttpServer server;
+	private URL baseUrl;
+	private volatile String etag = "\"v1\"";
+	private final AtomicInteger downloads = new AtomicInteger();
+	private final AtomicInteger revalidations = new AtomicInteger();
+
+	@Override
+	protected void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				if (exchange.getRequestURI().getPath().startsWith("/missing")) {
+					exchange.sendResponseHeaders(404, -1);
+				} else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					revalidations.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+				} else {
+					downloads.incrementAndGet();
+					byte[] content = etag.getBytes("US-ASCII");
+					exchange.getResponseHeaders().set("ETag", etag);
+					exchange.getResponseHeaders().set("Content-Type", "image/png");
+					exchange.sendResponseHeaders(200, content.length);
+					OutputStream os = exchange.getResponseBody();
+					os.write(content);
+					os.close();
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		baseUrl = new URL("http://localhost:" + server.getAddress().getPort() + "/");
+	}
+
+	@Override
+	protected void tearDown() {
+		server.stop(0);
+	}
+
+	private String read(DataSource ds) throws IOException {
+		byte[] content = new byte[ds.getInputStream().available()];
+		ds.getInputStream().read(content);
+		return new String(content, "US-ASCII");
+	}
+
+	/*
+	 * testFresh() does not contact the server while the resource is fresh
+	 */
+	public void testFresh() throws Exception {
+		DataSourceUrlResolver resolver = new DataSourceUrlResolver(baseUrl, false, 60000);
+		for (int i = 0; i < 3; i++) {
+			DataSource ds = resolver.resolve("images/logo.png");
+			assertEquals("image/png", ds.getContentType());
+			assertEquals("/images/logo.png", ds.getName());
+			assertEquals("\"v1\"", read(ds));
+		}
+		assertEquals(1, downloads.get());
+		assertEquals(0, revalidations.get());
+	}
+
+	/*
+	 * testRevalidate() sends conditional requests once the resource is stale
+	 */
+	public void testRevalidate() throws Exception {
+		DataSourceUrlResolver resolver = new DataSourceUrlResolver(baseUrl, false, 0);
+		resolver.resolve("images/logo.png");
+		resolver.resolve("images/logo.png");
+		assertEquals(1, downloads.get());
+		assertEquals(1, revalidations.get());
+
+		etag = "\"v2\"";
+		assertEquals("\"v2\"", read(resolver.resolve("images/logo.png")));
+		assertEquals(2, downloads.get());
+	}
+
+	/*
+	 * testMissing() handles resources not found
+	 */
+	public void testMissing() throws Exception {
+		DataSourceUrlResolver resolver = new DataSourceUrlResolver(baseUrl, true, 0);
+		assertNull(resolver.resolve("missing.png"));
+		try {
+			resolver.resolve("missing.png", false);
+			fail("Should have thrown an exception");
+		} catch (IOException e) {
+			assertTrue(true);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Session;
+
+import junit.framework.TestCase;
+
+import org.subethamail.wiser.Wiser;
+
+/*
+ * EmailBatchTest sends a batch of emails to an in-process SMTP server and
+ * checks the per-message results
+ */
+public class EmailBatchTest extends TestCase {
+
+	private static final int PORT = 2527;
+	private Wiser wiser;
+
+	@Override
+	protected void setUp() {
+		wiser = new Wiser();
+		wiser.setPort(PORT);
+		wiser.start();
+	}
+
+	private SimpleEmail createEmail(String to) throws EmailException {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName("localhost");
+		email.setSmtpPort(PORT);
+		email.setFrom("user1@gmail.com");
+		if (to != null) {
+			email.addTo(to);
+		}
+		email.setSubject("batch");
+		email.setMsg("batch message");
+		return email;
+	}
+
+	/*
+	 * testSendAll() sends three valid emails and one without receivers and
+	 * ensures that only the invalid one fails
+	 */
+	public void testSendAll() throws EmailException {
+		List<SimpleEmail> emails = new ArrayList<SimpleEmail>();
+		emails.add(createEmail("user1@gmail.com"));
+		emails.add(createEmail(null));
+		emails.add(createEmail("user2@gmail.com"));
+		emails.add(createEmail("user3@gmail.com"));
+
+		List<EmailBatch.Result> results = new EmailBatch().sendAll(emails);
+
+		assertEquals(4, results.size());
+		assertTrue(results.get(0).isSuccess());
+		assertNotNull(results.get(0).getMessageId());
+		assertFalse(results.get(1).isSuccess());
+		assertNull(results.get(1).getMessageId());
+		assertSame(emails.get(1), results.get(1).getEmail());
+		assertTrue(results.get(2).isSuccess());
+		assertTrue(results.get(3).isSuccess());
+		assertEquals(3, wiser.getMessages().size());
+	}
+
+	/*
+	 * testSendAllReportsToListeners() reports every email of a batch to its
+	 * metrics and trace listeners like sending it alone does
+	 */
+	public void testSendAllReportsToListeners() throws EmailException {
+		final List<String> events = new ArrayList<String>();
+		final List<SmtpTrace> traces = new ArrayList<SmtpTrace>();
+		EmailMetricsListener metrics = new EmailMetricsListener() {
+			public void phaseCompleted(Email email, Phase phase, long nanos) {
+				if (phase == Phase.CONNECT || phase == Phase.DATA) {
+					events.add(phase.name());
+				}
+			}
+
+			public void messageSent(Email email, long size, long nanos) {
+				assertTrue(size > 0);
+				events.add("sent");
+			}
+
+			public void sendFailed(Email email, Throwable cause, long nanos) {
+				events.add("failed");
+			}
+		};
+		SmtpTraceListener tracer = new SmtpTraceListener() {
+			public void traced(Email email, SmtpTrace trace) {
+				traces.add(trace);
+			}
+		};
+
+		List<SimpleEmail> emails = new ArrayList<SimpleEmail>();
+		emails.add(createEmail("user1@gmail.com"));
+		emails.add(createEmail("user2@gmail.com"));
+		for (SimpleEmail email : emails) {
+			email.setMetricsListener(metrics);
+			email.setSmtpTraceListener(tracer);
+		}
+
+		List<EmailBatch.Result> results = new EmailBatch().sendAll(emails);
+
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+		assertEquals("[CONNECT, DATA, sent, DATA, sent]", events.toString());
+		assertEquals(2, traces.size());
+		assertEquals("delivered", traces.get(0).getOutcome());
+		assertTrue(traces.get(0).getDuration("CONNECT") > 0);
+		assertEquals("delivered", traces.get(1).getOutcome());
+		assertEquals(0, traces.get(1).getDuration("CONNECT"));
+		assertTrue(traces.get(1).getDuration("DATA") > 0);
+	}
+
+	/*
+	 * testSendAllWithPool() ensures the connection is handed back to a
+	 * supplied pool after the batch
+	 */
+	public void testSendAllWithPool() throws EmailException {
+		TransportPool pool = new TransportPool();
+		List<SimpleEmail> emails = new ArrayList<SimpleEmail>();
+		emails.add(createEmail("user1@gmail.com"));
+		emails.add(createEmail("user2@gmail.com"));
+
+		new EmailBatch(pool).sendAll(emails);
+
+		assertEquals(2, wiser.getMessages().size());
+		assertEquals(1, pool.getIdleCount());
+		pool.close();
+	}
+
+	/*
+	 * testSendAllWithSuppliedSessions() ensures emails with supplied sessions
+	 * differing only in their authenticator are not sent over the same
+	 * connection
+	 */
+	public void testSendAllWithSuppliedSessions() throws EmailException {
+		TransportPool pool = new TransportPool();
+		List<SimpleEmail> emails = new ArrayList<SimpleEmail>();
+		for (int i = 1; i <= 2; i++) {
+			Properties properties = new Properties();
+			properties.setProperty(EmailConstants.MAIL_TRANSPORT_PROTOCOL, EmailConstants.SMTP);
+			properties.setProperty(EmailConstants.MAIL_HOST, "localhost");
+			properties.setProperty(EmailConstants.MAIL_PORT, String.valueOf(PORT));
+			properties.setProperty(EmailConstants.MAIL_SMTP_AUTH, "true");
+			SimpleEmail email = createEmail("user" + i + "@gmail.com");
+			email.setMailSession(Session.getInstance(properties, new DefaultAuthenticator("user" + i, "password")));
+			emails.add(email);
+		}
+
+		List<EmailBatch.Result> results = new EmailBatch(pool).sendAll(emails);
+
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+		assertEquals(2, wiser.getMessages().size());
+		assertEquals(2, pool.getIdleCount());
+		pool.close();
+	}
+
+	@Override
+	protected void tearDown() {
+		wiser.stop();
+	}
+}
@@ -0,0 +1,64 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.ByteArrayDataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.util.MimeMessageParser;
+import org.apache.commons.mail.util.MimeMessageUtils;
+
+/*
+ * EmailTemplateTest builds an HtmlEmail once and creates messages for
+ * different recipients from it
+ */
+public class EmailTemplateTest extends TestCase {
+
+	private EmailTemplate template;
+
+	@Override
+	protected void setUp() throws EmailException {
+		HtmlEmail email = new HtmlEmail();
+		email.setHostName("smtp.gmail.com");
+		email.setFrom("user1@gmail.com");
+		email.addTo("template@gmail.com");
+		email.addCc("cc@gmail.com");
+		email.setSubject("template");
+		email.setHtmlMsg("<html><body>Hello</body></html>");
+		email.attach(new ByteArrayDataSource(new byte[1024], "application/pdf"), "doc.pdf", "a document");
+		template = new EmailTemplate(email);
+	}
+
+	/*
+	 * testCreateMimeMessage() ensures every message gets its own recipients
+	 * and Message-ID while sharing the body of the template
+	 */
+	public void testCreateMimeMessage() throws Exception {
+		MimeMessage first = template.createMimeMessage(new InternetAddress("user2@gmail.com"));
+		MimeMessage second = template.createMimeMessage(new InternetAddress("user3@gmail.com"));
+		second.setSubject("changed");
+		first.saveChanges();
+		second.saveChanges();
+
+		assertEquals("user2@gmail.com", first.getRecipients(Message.RecipientType.TO)[0].toString());
+		assertNull(first.getRecipients(Message.RecipientType.CC));
+		assertEquals("template", first.getSubject());
+		assertEquals("changed", second.getSubject());
+		assertFalse(first.getMessageID().equals(second.getMessageID()));
+
+		MimeMessageParser parser = new MimeMessageParser(reparse(second)).parse();
+		assertEquals("user3@gmail.com", parser.getTo().get(0).toString());
+		assertEquals("<html><body>Hello</body></html>", parser.getHtmlContent());
+		assertEquals(1024, parser.findAttachmentByName("doc.pdf").getInputStream().available());
+	}
+
+	private MimeMessage reparse(MimeMessage message) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		message.writeTo(os);
+		return MimeMessageUtils.createMimeMessage(template.getMailSession(), os.toByteArray());
+	}
+}
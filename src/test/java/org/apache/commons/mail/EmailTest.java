@@ -3,6 +3,9 @@ package org.apache.commons.mail;
 import static org.junit.Assert.assertThrows;
 
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.mail.Session;
 import javax.mail.internet.MimeMultipart;
@@ -606,6 +609,34 @@ public class EmailTest extends TestCase {
 		assertEquals(contentType, email.contentType);
 	}
 
+	/*
+	 * testSendAsync() ensures the message id returned by sendMimeMessage() is
+	 * delivered through the future
+	 */
+	public void testSendAsync() throws Exception {
+		email.addTo("user2@gmail.com");
+		email.setMsg("async message");
+		assertEquals("QlebYH", email.sendAsync().get());
+	}
+
+	/*
+	 * testSendAsyncFailure() ensures a failure to build the email completes the
+	 * future with an EmailException
+	 */
+	public void testSendAsyncFailure() throws Exception {
+		email.setMsg("async message");
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Exception exception = assertThrows(ExecutionException.class, () -> {
+				email.sendAsync(executor).get();
+			});
+			assertTrue(exception.getCause() instanceof EmailException);
+			assertEquals("At least one receiver address required", exception.getCause().getMessage());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	/*
 	 * tearDown() is called at the end of JUnit's lifetime and cleans up the emails
 	 * that were created
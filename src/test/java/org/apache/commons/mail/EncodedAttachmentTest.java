@@ -0,0 +1,81 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.activation.DataSource;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.ByteArrayDataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.util.MimeMessageParser;
+import org.apache.commons.mail.util.MimeMessageUtils;
+
+/*
+ * EncodedAttachmentTest attaches one encoded attachment to several emails and
+ * ensures the content survives the round trip
+ */
+public class EncodedAttachmentTest extends TestCase {
+
+	private byte[] data;
+	private EncodedAttachment attachment;
+
+	@Override
+	protected void setUp() throws EmailException {
+		data = new byte[5000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		ByteArrayDataSource dataSource = new ByteArrayDataSource(data, "application/pdf");
+		dataSource.setName("doc.pdf");
+		attachment = EncodedAttachment.encode(dataSource);
+	}
+
+	/*
+	 * testEncode() ensures binary content is base64 encoded
+	 */
+	public void testEncode() {
+		assertEquals("base64", attachment.getEncoding());
+		assertEquals("application/pdf", attachment.getContentType());
+		assertEquals("doc.pdf", attachment.getName());
+		assertTrue(attachment.getSize() > data.length);
+	}
+
+	/*
+	 * testAttachShared() attaches the same encoded attachment to two emails
+	 */
+	public void testAttachShared() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			MultiPartEmail email = new MultiPartEmail();
+			email.setHostName("smtp.gmail.com");
+			email.setFrom("user1@gmail.com");
+			email.addTo("user2@gmail.com");
+			email.setMsg("message " + i);
+			email.attach(attachment, null, "a document", EmailAttachment.ATTACHMENT);
+			email.buildMimeMessage();
+
+			DataSource received = new MimeMessageParser(reparse(email.getMimeMessage())).parse()
+					.findAttachmentByName("doc.pdf");
+			assertNotNull(received);
+			assertTrue(Arrays.equals(data, read(received.getInputStream())));
+		}
+	}
+
+	private MimeMessage reparse(MimeMessage message) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		message.saveChanges();
+		message.writeTo(os);
+		return MimeMessageUtils.createMimeMessage(null, os.toByteArray());
+	}
+
+	private byte[] read(InputStream is) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		int ch;
+		while ((ch = is.read()) != -1) {
+			os.write(ch);
+		}
+		return os.toByteArray();
+	}
+}
@@ -0,0 +1,54 @@
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/*
+ * HtmlResourceScannerTest finds resource locations in HTML
+ */
+public class HtmlResourceScannerTest extends TestCase {
+
+	private List<String> scan(String html, boolean cssImages) {
+		int[] locations = new HtmlResourceScanner(cssImages).scan(html);
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < locations.length; i += 2) {
+			result.add(html.substring(locations[i], locations[i + 1]));
+		}
+		return result;
+	}
+
+	/*
+	 * testImagesAndScripts() finds quoted img and script sources
+	 */
+	public void testImagesAndScripts() {
+		String html = "<html><HEAD><SCRIPT type=\"text/javascript\" Src='app.js'>var s = '<img src=\"no.png\">';</script>"
+				+ "</head><body>\n<IMG\n alt=\"a > b\"\n SRC = \"a.png\" />"
+				+ "<!-- <img src=\"comment.png\"> --><img src=unquoted.png><img src=\"\">"
+				+ "<image src=\"other.png\"><img data-x src=\"b.gif\"></body></html>";
+		assertEquals(Arrays.asList("app.js", "a.png", "b.gif"), scan(html, false));
+	}
+
+	/*
+	 * testCssImages() finds background attributes and url() references
+	 */
+	public void testCssImages() {
+		String html = "<style>body { background: url( 'bg.png' ) } .x { background: url(data:image/png;base64,AA==) }</style>"
+				+ "<table background=\"table.jpg\"><td style=\"background-image: URL(cell.gif)\">"
+				+ "<img src=\"img.png\"></td></table>";
+		assertEquals(Arrays.asList("bg.png", "table.jpg", "cell.gif", "img.png"), scan(html, true));
+		assertEquals(Arrays.asList("img.png"), scan(html, false));
+	}
+
+	/*
+	 * testMalformed() does not fail on truncated HTML
+	 */
+	public void testMalformed() {
+		assertEquals(Arrays.asList("a.png"), scan("<img src=\"a.png\"><img src=\"b.png", true));
+		assertTrue(scan("<img src", true).isEmpty());
+		assertTrue(scan("< <", true).isEmpty());
+		assertTrue(scan("<style>url(", true).isEmpty());
+	}
+}
@@ -0,0 +1,272 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.activation.DataSource;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.ByteArrayDataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.resolver.DataSourceBaseResolver;
+import org.apache.commons.mail.util.MimeMessageParser;
+import org.apache.commons.mail.util.MimeMessageUtils;
+
+/*
+ * ImageHtmlTemplateTest resolves the resources of an HTML text once and
+ * applies it to several emails
+ */
+public class ImageHtmlTemplateTest extends TestCase {
+
+	private final List<String> resolved = Collections.synchronizedList(new ArrayList<String>());
+
+	private final DataSourceResolver resolver = new DataSourceResolver() {
+		public DataSource resolve(String resourceLocation) throws IOException {
+			return resolve(resourceLocation, true);
+		}
+
+		public DataSource resolve(String resourceLocation, boolean isLenient) throws IOException {
+			resolved.add(resourceLocation);
+			if (resourceLocation.startsWith("missing")) {
+				return null;
+			}
+			ByteArrayDataSource ds = new ByteArrayDataSource(new byte[300], "image/png");
+			ds.setName(resourceLocation.substring(resourceLocation.lastIndexOf('/') + 1));
+			return ds;
+		}
+	};
+
+	/*
+	 * testApply() embeds each resource once and keeps unresolved locations
+	 */
+	public void testApply() throws Exception {
+		String html = "<html><body><img src=\"images/logo.png\"><IMG alt='x' SRC='missing.png'>"
+				+ "<img src=\"images/logo.png\"/><script src=\"js/app.js\"></script></body></html>";
+		ImageHtmlTemplate template = new ImageHtmlTemplate(html, resolver);
+
+		assertEquals(2, template.getResourceCount());
+		assertEquals(3, resolved.size());
+
+		for (int i = 0; i < 2; i++) {
+			HtmlEmail email = new HtmlEmail();
+			email.setHostName("localhost");
+			email.setFrom("sender@example.com");
+			email.addTo("recipient" + i + "@example.com");
+			template.apply(email);
+			email.buildMimeMessage();
+
+			MimeMessageParser parser = new MimeMessageParser(reparse(email.getMimeMessage())).parse();
+			String result = parser.getHtmlContent();
+			assertFalse(result.contains("images/logo.png"));
+			assertFalse(result.contains("js/app.js"));
+			assertTrue(result.contains("SRC='missing.png'"));
+			assertEquals(4, result.split("cid:").length);
+			assertEquals(300, parser.findAttachmentByName("logo.png").getInputStream().available());
+			assertNotNull(parser.findAttachmentByName("app.js"));
+		}
+
+		/* nothing is resolved again */
+		assertEquals(3, resolved.size());
+	}
+
+	/*
+	 * testImageHtmlEmail() replaces the resources found by the scanner
+	 */
+	public void testImageHtmlEmail() throws Exception {
+		ImageHtmlEmail email = new ImageHtmlEmail();
+		email.setHostName("localhost");
+		email.setFrom("sender@example.com");
+		email.addTo("recipient@example.com");
+		email.setDataSourceResolver(resolver);
+		email.setEmbedCssImages(true);
+		email.setHtmlMsg("<body background=\"images/bg.png\"><img src=\"images/logo.png\">"
+				+ "<img src='missing.png'><div style=\"background: url(images/logo.png)\"></div></body>");
+		email.buildMimeMessage();
+
+		MimeMessageParser parser = new MimeMessageParser(reparse(email.getMimeMessage())).parse();
+		String result = parser.getHtmlContent();
+		assertTrue(result.contains("<img src='missing.png'>"));
+		assertEquals(4, result.split("cid:").length);
+		assertEquals(2, parser.getAttachmentList().size());
+		assertEquals(3, resolved.size());
+	}
+
+	/*
+	 * testParallelResolution() resolves the resources concurrently
+	 */
+	public void testParallelResolution() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		try {
+			ImageHtmlEmail email = new ImageHtmlEmail();
+			email.setHostName("localhost");
+			email.setFrom("sender@example.com");
+			email.addTo("recipient@example.com");
+			/* every resolution waits until all three run concurrently */
+			email.setDataSourceResolver(new DataSourceResolver() {
+				public DataSource resolve(String resourceLocation) throws IOException {
+					return resolve(resourceLocation, true);
+				}
+
+				public DataSource resolve(String resourceLocation, boolean isLenient) throws IOException {
+					latch.countDown();
+					try {
+						latch.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					}
+					return resolver.resolve(resourceLocation, isLenient);
+				}
+			});
+			email.setResolverExecutor(executor);
+			email.setResolverTimeout(10000);
+			email.setHtmlMsg("<img src=\"a.png\"><img src=\"b.png\"><img src=\"a.png\"><img src=\"missing.png\">");
+			email.buildMimeMessage();
+
+			assertEquals(0, latch.getCount());
+			assertEquals(3, resolved.size());
+			MimeMessageParser parser = new MimeMessageParser(reparse(email.getMimeMessage())).parse();
+			assertEquals(4, parser.getHtmlContent().split("cid:").length);
+			assertTrue(parser.getHtmlContent().contains("missing.png"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * creates an email whose resource "slow.png" counts down the started latch
+	 * and is only resolved when the resolving thread is interrupted, which
+	 * counts down the interrupted latch
+	 */
+	private ImageHtmlEmail createSlowEmail(final boolean lenient, final CountDownLatch started,
+			final CountDownLatch interrupted) throws Exception {
+		ImageHtmlEmail email = new ImageHtmlEmail();
+		email.setHostName("localhost");
+		email.setFrom("sender@example.com");
+		email.addTo("recipient@example.com");
+		email.setDataSourceResolver(new DataSourceBaseResolver(lenient) {
+			public DataSource resolve(String resourceLocation) throws IOException {
+				return resolve(resourceLocation, isLenient());
+			}
+
+			public DataSource resolve(String resourceLocation, boolean isLenient) throws IOException {
+				if (resourceLocation.startsWith("slow")) {
+					started.countDown();
+					try {
+						Thread.sleep(10000);
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+						throw new IOException(e);
+					}
+				}
+				return resolver.resolve(resourceLocation, isLenient);
+			}
+		});
+		email.setHtmlMsg("<img src=\"a.png\"><img src=\"slow.png\">");
+		return email;
+	}
+
+	/*
+	 * testResolverTimeout() fails the build if a resource of a strict resolver
+	 * is not resolved in time and stops resolving it
+	 */
+	public void testResolverTimeout() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			ImageHtmlEmail email = createSlowEmail(false, new CountDownLatch(1), interrupted);
+			email.setResolverExecutor(executor);
+			email.setResolverTimeout(100);
+			try {
+				email.buildMimeMessage();
+				fail("timeout expected");
+			} catch (EmailException e) {
+				assertEquals("Resolving the following resource timed out : slow.png", e.getCause().getMessage());
+			}
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * testResolverTimeoutLenient() leaves a resource of a lenient resolver
+	 * unchanged if it is not resolved in time
+	 */
+	public void testResolverTimeoutLenient() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			ImageHtmlEmail email = createSlowEmail(true, new CountDownLatch(1), interrupted);
+			email.setResolverExecutor(executor);
+			email.setResolverTimeout(100);
+			email.buildMimeMessage();
+
+			MimeMessageParser parser = new MimeMessageParser(reparse(email.getMimeMessage())).parse();
+			assertTrue(parser.getHtmlContent().contains("<img src=\"slow.png\">"));
+			assertEquals(2, parser.getHtmlContent().split("cid:").length);
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * testResolverRejected() stops resolving the resources already submitted
+	 * when the executor rejects a resource
+	 */
+	public void testResolverRejected() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			ImageHtmlEmail email = createSlowEmail(false, started, interrupted);
+			email.setHtmlMsg("<img src=\"slow.png\"><img src=\"a.png\">");
+			/* accepts the first resource only and rejects the second once the first runs */
+			email.setResolverExecutor(new Executor() {
+				private int count;
+
+				public void execute(Runnable command) {
+					if (count++ > 0) {
+						try {
+							started.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						throw new RejectedExecutionException("full");
+					}
+					executor.execute(command);
+				}
+			});
+			try {
+				email.buildMimeMessage();
+				fail("rejection expected");
+			} catch (RejectedExecutionException e) {
+				assertEquals("full", e.getMessage());
+			}
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private MimeMessage reparse(MimeMessage message) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		message.writeTo(os);
+		return MimeMessageUtils.createMimeMessage(null, os.toByteArray());
+	}
+}
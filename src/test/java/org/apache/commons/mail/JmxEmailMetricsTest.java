@@ -0,0 +1,223 @@
+package org.apache.commons.mail;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import javax.mail.Message;
+import javax.mail.SendFailedException;
+
+import junit.framework.TestCase;
+
+import org.subethamail.smtp.helper.SimpleMessageListenerAdapter;
+import org.subethamail.smtp.server.SMTPServer;
+import org.subethamail.wiser.Wiser;
+
+/*
+ * JmxEmailMetricsTest sends emails to an in-process SMTP server with a
+ * metrics listener and reads the metrics through JMX
+ */
+public class JmxEmailMetricsTest extends TestCase {
+
+	private Wiser wiser;
+
+	private SMTPServer server;
+
+	private JmxEmailMetrics metrics;
+
+	private final List<EmailMetricsListener.Phase> phases = Collections
+			.synchronizedList(new ArrayList<EmailMetricsListener.Phase>());
+
+	@Override
+	protected void setUp() {
+		/* the server binds to a free port, the messages are collected by the Wiser */
+		wiser = new Wiser();
+		server = new SMTPServer(new SimpleMessageListenerAdapter(wiser)) {
+			@Override
+			protected ServerSocket createServerSocket() throws IOException {
+				ServerSocket serverSocket = super.createServerSocket();
+				setPort(serverSocket.getLocalPort());
+				return serverSocket;
+			}
+		};
+		server.setPort(0);
+		server.start();
+		metrics = new JmxEmailMetrics() {
+			@Override
+			public void phaseCompleted(Email email, Phase phase, long nanos) {
+				super.phaseCompleted(email, phase, nanos);
+				phases.add(phase);
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws EmailException {
+		metrics.unregister();
+		server.stop();
+	}
+
+	private HtmlEmail createEmail() throws EmailException {
+		HtmlEmail email = new HtmlEmail();
+		email.setHostName("localhost");
+		email.setSmtpPort(server.getPort());
+		email.setFrom("user1@gmail.com");
+		email.addTo("user2@gmail.com");
+		email.setSubject("metrics");
+		email.setHtmlMsg("<html><body>metrics</body></html>");
+		email.setMetricsListener(metrics);
+		return email;
+	}
+
+	/*
+	 * testPhases() reports every phase of building and sending an email
+	 */
+	public void testPhases() throws Exception {
+		createEmail().send();
+
+		assertEquals(1, wiser.getMessages().size());
+		assertEquals(1, metrics.getSentCount());
+		assertEquals(0, metrics.getFailedCount());
+		/* the server adds a Received header */
+		assertTrue(metrics.getSentBytes() > 0);
+		assertTrue(metrics.getSentBytes() < wiser.getMessages().get(0).getData().length);
+		assertTrue(phases.contains(EmailMetricsListener.Phase.SESSION));
+		assertTrue(phases.contains(EmailMetricsListener.Phase.MULTIPART));
+		assertTrue(phases.contains(EmailMetricsListener.Phase.CONTENT));
+		assertTrue(phases.contains(EmailMetricsListener.Phase.ADDRESSES));
+		assertTrue(phases.contains(EmailMetricsListener.Phase.HEADERS));
+		assertTrue(phases.contains(EmailMetricsListener.Phase.CONNECT));
+		assertTrue(phases.contains(EmailMetricsListener.Phase.DATA));
+		assertEquals(1, metrics.getPhaseTime(EmailMetricsListener.Phase.DATA).getCount());
+
+		/* the pooled path reports the same phases */
+		TransportPool pool = new TransportPool();
+		try {
+			HtmlEmail email = createEmail();
+			email.setTransportPool(pool);
+			email.send();
+		} finally {
+			pool.close();
+		}
+		assertEquals(2, metrics.getSentCount());
+		assertEquals(2, metrics.getPhaseTime(EmailMetricsListener.Phase.DATA).getCount());
+	}
+
+	/*
+	 * testFailure() counts emails which could not be sent
+	 */
+	public void testFailure() throws Exception {
+		HtmlEmail email = createEmail();
+		ServerSocket unused = new ServerSocket(0);
+		email.setSmtpPort(unused.getLocalPort());
+		unused.close();
+		try {
+			email.send();
+			fail("no server");
+		} catch (EmailException e) {
+			/* expected */
+		}
+		assertEquals(0, metrics.getSentCount());
+		assertEquals(1, metrics.getFailedCount());
+	}
+
+	/*
+	 * testNoRecipients() fails like Transport.send() does when the recipients
+	 * were removed after building the email
+	 */
+	public void testNoRecipients() throws Exception {
+		HtmlEmail email = createEmail();
+		email.buildMimeMessage();
+		email.getMimeMessage().setRecipients(Message.RecipientType.TO, (String) null);
+		try {
+			email.sendMimeMessage();
+			fail("no recipients");
+		} catch (EmailException e) {
+			assertTrue(e.getCause() instanceof SendFailedException);
+			assertEquals("No recipient addresses", e.getCause().getMessage());
+		}
+		assertEquals(1, metrics.getFailedCount());
+	}
+
+	/*
+	 * testFailingListener() neither turns a delivered email into a failure
+	 * nor hides the real failure when the listener throws
+	 */
+	public void testFailingListener() throws Exception {
+		EmailMetricsListener failing = new EmailMetricsListener() {
+			public void phaseCompleted(Email email, Phase phase, long nanos) {
+				throw new IllegalStateException("phase");
+			}
+
+			public void messageSent(Email email, long size, long nanos) {
+				throw new IllegalStateException("sent");
+			}
+
+			public void sendFailed(Email email, Throwable cause, long nanos) {
+				throw new IllegalStateException("failed");
+			}
+		};
+
+		HtmlEmail email = createEmail();
+		email.setMetricsListener(failing);
+		email.send();
+		assertEquals(1, wiser.getMessages().size());
+
+		email = createEmail();
+		email.setMetricsListener(failing);
+		ServerSocket unused = new ServerSocket(0);
+		email.setSmtpPort(unused.getLocalPort());
+		unused.close();
+		try {
+			email.send();
+			fail("no server");
+		} catch (EmailException e) {
+			assertTrue(e.getMessage().startsWith("Sending the email to the following server failed"));
+			assertEquals("failed", e.getSuppressed()[0].getMessage());
+		}
+	}
+
+	/*
+	 * testJmx() reads the metrics from the platform MBean server
+	 */
+	public void testJmx() throws Exception {
+		metrics.register("test");
+		createEmail().send();
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = metrics.getObjectName();
+		assertEquals(Long.valueOf(1), server.getAttribute(name, "SentCount"));
+
+		CompositeData sendTime = (CompositeData) server.getAttribute(name, "SendTime");
+		assertEquals(Long.valueOf(1), sendTime.get("count"));
+
+		TabularData phaseTimes = (TabularData) server.getAttribute(name, "PhaseTimes");
+		assertEquals(EmailMetricsListener.Phase.values().length, phaseTimes.size());
+
+		server.invoke(name, "reset", null, null);
+		assertEquals(0, metrics.getSentCount());
+	}
+
+	/*
+	 * testHistogram() reports percentiles within a quarter of the exact value
+	 */
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500, histogram.getMean());
+		assertEquals(1000, histogram.getMax());
+		assertTrue(histogram.getP50() >= 500 && histogram.getP50() < 625);
+		assertTrue(histogram.getP99() >= 990 && histogram.getP99() <= 1000);
+		assertEquals(0, new Histogram().getP50());
+	}
+}
@@ -0,0 +1,184 @@
+package org.apache.commons.mail;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * LoadGenerator drives a number of concurrent senders against an SmtpSink
+ * and reports the throughput, the latency percentiles of the send calls,
+ * the connections opened and the bytes on the wire. A send call may send a
+ * single email or a whole batch, e.g. using EmailBatch.
+ *
+ * Run it from the command line with
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.apache.commons.mail.LoadGenerator
+ *     -Dexec.args="<senders> <messages> <latency ms> <failure rate> <pooled>"
+ */
+public class LoadGenerator {
+
+	/*
+	 * Sends the message(s) of a single call, returning the number of
+	 * messages sent
+	 */
+	public interface Sender {
+		int send(int index) throws Exception;
+	}
+
+	private final SmtpSink sink;
+
+	private final int senders;
+
+	public LoadGenerator(SmtpSink sink, int senders) {
+		this.sink = sink;
+		this.senders = senders;
+	}
+
+	/*
+	 * calls the sender the given number of times using all senders
+	 * concurrently
+	 */
+	public Report run(final Sender sender, final int calls) throws InterruptedException {
+		final long[] latencies = new long[calls];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicLong messages = new AtomicLong();
+		final AtomicLong failures = new AtomicLong();
+
+		sink.reset();
+		ExecutorService executor = Executors.newFixedThreadPool(senders);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < senders; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					for (int index = next.getAndIncrement(); index < calls; index = next.getAndIncrement()) {
+						long begin = System.nanoTime();
+						try {
+							messages.addAndGet(sender.send(index));
+						} catch (Exception e) {
+							failures.incrementAndGet();
+						}
+						latencies[index] = System.nanoTime() - begin;
+					}
+				}
+			});
+		}
+
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+		return new Report(System.nanoTime() - start, latencies, messages.get(), failures.get(),
+				sink.getConnectionCount(), sink.getBytesReceived() + sink.getBytesSent());
+	}
+
+	/*
+	 * The result of a run, all times in nanoseconds
+	 */
+	public static class Report {
+
+		private final long elapsed;
+
+		private final long[] latencies;
+
+		private final long messages;
+
+		private final long failures;
+
+		private final long connections;
+
+		private final long bytes;
+
+		Report(long elapsed, long[] latencies, long messages, long failures, long connections, long bytes) {
+			this.elapsed = elapsed;
+			this.latencies = latencies.clone();
+			this.messages = messages;
+			this.failures = failures;
+			this.connections = connections;
+			this.bytes = bytes;
+			Arrays.sort(this.latencies);
+		}
+
+		public long getMessages() {
+			return messages;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public long getConnections() {
+			return connections;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public double getMessagesPerSecond() {
+			return messages * 1e9 / elapsed;
+		}
+
+		/*
+		 * returns the latency below which the given share of calls completed
+		 */
+		public long getLatency(double percentile) {
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US,
+					"%d messages, %d failures, %.1f msg/s, p50 %.3f ms, p99 %.3f ms, p999 %.3f ms,"
+							+ " %d connections, %d bytes",
+					messages, failures, getMessagesPerSecond(), getLatency(0.5) / 1e6, getLatency(0.99) / 1e6,
+					getLatency(0.999) / 1e6, connections, bytes);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int senders = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int messages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 0;
+		double failureRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+		boolean pooled = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+		final SmtpSink sink = new SmtpSink(0);
+		sink.setLatency(latency);
+		sink.setFailureRate(failureRate);
+		sink.start();
+
+		final TransportPool pool = pooled ? new TransportPool(senders, 60000) : null;
+
+		try {
+			Report report = new LoadGenerator(sink, senders).run(new Sender() {
+				public int send(int index) throws EmailException {
+					SimpleEmail email = new SimpleEmail();
+					email.setHostName("localhost");
+					email.setSmtpPort(sink.getPort());
+					email.setFrom("sender@example.org");
+					email.addTo("recipient" + index + "@example.org");
+					email.setSubject("load test " + index);
+					email.setMsg("This is message " + index + " of the load test.");
+					email.setTransportPool(pool);
+					email.send();
+					return 1;
+				}
+			}, messages);
+			System.out.println(report);
+		} finally {
+			if (pool != null) {
+				pool.close();
+			}
+			sink.stop();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.apache.commons.mail;
+
+import junit.framework.TestCase;
+
+/*
+ * LoadGeneratorTest runs small loads against an SmtpSink and checks the
+ * report
+ */
+public class LoadGeneratorTest extends TestCase {
+
+	private SmtpSink sink;
+
+	private TransportPool pool;
+
+	@Override
+	protected void setUp() {
+		sink = new SmtpSink(0);
+		sink.start();
+		pool = new TransportPool();
+	}
+
+	@Override
+	protected void tearDown() {
+		pool.close();
+		sink.stop();
+	}
+
+	private LoadGenerator.Sender createSender(final TransportPool transportPool) {
+		return new LoadGenerator.Sender() {
+			public int send(int index) throws EmailException {
+				SimpleEmail email = new SimpleEmail();
+				email.setHostName("localhost");
+				email.setSmtpPort(sink.getPort());
+				email.setFrom("user1@gmail.com");
+				email.addTo("user" + index + "@gmail.com");
+				email.setSubject("load");
+				email.setMsg("load message");
+				email.setTransportPool(transportPool);
+				email.send();
+				return 1;
+			}
+		};
+	}
+
+	/*
+	 * testPooledLoad() sends all messages through at most one connection
+	 * per sender
+	 */
+	public void testPooledLoad() throws Exception {
+		sink.setLatency(5);
+		LoadGenerator.Report report = new LoadGenerator(sink, 4).run(createSender(pool), 20);
+
+		assertEquals(20, report.getMessages());
+		assertEquals(0, report.getFailures());
+		assertEquals(20, sink.getMessageCount());
+		assertTrue(report.getConnections() >= 1 && report.getConnections() <= 4);
+		assertTrue(report.getBytes() > 0);
+		assertTrue(report.getLatency(0.5) >= 5000000L);
+		assertTrue(report.getLatency(0.5) <= report.getLatency(0.999));
+	}
+
+	/*
+	 * testFailures() counts the messages rejected by the sink as failures
+	 */
+	public void testFailures() throws Exception {
+		sink.setFailureRate(1);
+		LoadGenerator.Report report = new LoadGenerator(sink, 2).run(createSender(null), 6);
+
+		assertEquals(0, report.getMessages());
+		assertEquals(6, report.getFailures());
+		assertEquals(6, sink.getRejectedCount());
+		assertEquals(6, report.getConnections());
+	}
+}
@@ -0,0 +1,70 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/*
+ * MappedFileDataSourceTest reads a memory-mapped file using one or several
+ * mapped regions
+ */
+public class MappedFileDataSourceTest extends TestCase {
+
+	private File file;
+	private byte[] data;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = new byte[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 7);
+		}
+		file = File.createTempFile("mapped", ".pdf");
+		FileOutputStream os = new FileOutputStream(file);
+		os.write(data);
+		os.close();
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	private byte[] read(InputStream is) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[999];
+		int length;
+		while ((length = is.read(buffer)) != -1) {
+			os.write(buffer, 0, length);
+		}
+		return os.toByteArray();
+	}
+
+	/*
+	 * testRead() reads the file twice using a single region
+	 */
+	public void testRead() throws Exception {
+		MappedFileDataSource ds = new MappedFileDataSource(file);
+		assertEquals(file.getName(), ds.getName());
+		assertEquals(10000, ds.getSize());
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+	}
+
+	/*
+	 * testReadRegions() reads a file mapped as several regions
+	 */
+	public void testReadRegions() throws Exception {
+		MappedFileDataSource ds = new MappedFileDataSource(file, 3000);
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+
+		InputStream is = ds.getInputStream();
+		assertEquals(10000, is.available());
+		assertEquals(5000, is.skip(5000));
+		assertEquals(data[5000] & 0xff, is.read());
+	}
+}
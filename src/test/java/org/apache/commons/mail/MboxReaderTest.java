@@ -0,0 +1,97 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.mail.internet.MimeMessage;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.util.MboxReader;
+
+/*
+ * MboxReaderTest splits mbox content into messages
+ */
+public class MboxReaderTest extends TestCase {
+
+	private static final String SEPARATOR = "From a@example.com Mon Jan  1 00:00:00 2024\n";
+
+	/*
+	 * returns a stream of the content which reads at most 1000 bytes at once
+	 */
+	private InputStream chunked(String content) throws Exception {
+		return new FilterInputStream(new ByteArrayInputStream(content.getBytes("US-ASCII"))) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, 1000));
+			}
+		};
+	}
+
+	/*
+	 * testLongLines() reads a line longer than the read buffer from a
+	 * stream returning small chunks
+	 */
+	public void testLongLines() throws Exception {
+		char[] longLine = new char[100000];
+		Arrays.fill(longLine, 'x');
+		String content = "preamble\n" + SEPARATOR + "Subject: one\n\n"
+				+ new String(longLine) + "\n>From quoted\n\nFrom b@example.com Mon Jan  1 00:00:00 2024\r\n"
+				+ "Subject: two\r\n\r\nlast line";
+
+		MboxReader reader = new MboxReader(null, chunked(content));
+		try {
+			MimeMessage message = reader.readMessage();
+			assertEquals("one", message.getSubject());
+			assertEquals(new String(longLine) + "\nFrom quoted\n", message.getContent());
+			message = reader.readMessage();
+			assertEquals("two", message.getSubject());
+			assertEquals("last line", message.getContent());
+			assertNull(reader.readMessage());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/*
+	 * testLargeMessageFollowedBySmallOnes() reads small messages after a
+	 * message larger than the read buffer, each sized to its own content
+	 */
+	public void testLargeMessageFollowedBySmallOnes() throws Exception {
+		StringBuilder large = new StringBuilder();
+		while (large.length() < 1000000) {
+			large.append(">From line ").append(large.length()).append('\n');
+		}
+		StringBuilder content = new StringBuilder(SEPARATOR).append("Subject: large\n\n").append(large).append('\n');
+		for (int i = 0; i < 1000; i++) {
+			content.append(SEPARATOR).append("Subject: small ").append(i).append("\n\n>From ").append(i).append("\n\n");
+		}
+
+		MboxReader reader = new MboxReader(null, chunked(content.toString()));
+		try {
+			MimeMessage message = reader.readMessage();
+			assertEquals("large", message.getSubject());
+			assertEquals(large.toString().replace("\n>From", "\nFrom").substring(1), message.getContent());
+
+			List<MimeMessage> messages = new ArrayList<MimeMessage>();
+			while ((message = reader.readMessage()) != null) {
+				messages.add(message);
+			}
+			assertEquals(1000, messages.size());
+			for (int i = 0; i < messages.size(); i++) {
+				message = messages.get(i);
+				assertEquals("small " + i, message.getSubject());
+				assertEquals("From " + i + "\n", message.getContent());
+				/* the body without the blank separator line */
+				assertEquals(("From " + i + "\n").length(), message.getSize());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+import javax.mail.internet.MimeMessage;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.util.MboxReader;
+import org.apache.commons.mail.util.MboxWriter;
+import org.apache.commons.mail.util.MimeMessageParser;
+
+/*
+ * MboxWriterTest appends messages to mbox content and reads them again
+ */
+public class MboxWriterTest extends TestCase {
+
+	private MimeMessage createMessage(String text) throws Exception {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName("localhost");
+		email.setFrom("sender@example.com");
+		email.addTo("recipient@example.com");
+		email.setSubject("mbox");
+		email.setMsg(text);
+		email.buildMimeMessage();
+		return email.getMimeMessage();
+	}
+
+	/*
+	 * testMbox() appends messages to an mbox file and reads them again
+	 */
+	public void testMbox() throws Exception {
+		File mbox = File.createTempFile("archive", ".mbox");
+		String[] texts = { "From here on\r\n>From quoted\r\nend", "second", "third\r\n" };
+
+		try {
+			for (String text : texts) {
+				MboxWriter writer = new MboxWriter(mbox);
+				writer.append(createMessage(text));
+				writer.close();
+			}
+
+			MboxReader reader = new MboxReader(null, mbox);
+			try {
+				for (String text : texts) {
+					MimeMessage message = reader.readMessage();
+					assertNotNull(message);
+					assertEquals("mbox", message.getSubject());
+					/* mbox terminates the last line of a message */
+					assertEquals(text.trim(), new MimeMessageParser(message).parse().getPlainContent().trim());
+				}
+				assertNull(reader.readMessage());
+			} finally {
+				reader.close();
+			}
+		} finally {
+			mbox.delete();
+		}
+	}
+
+	/*
+	 * testDeepQuotes() quotes "From " lines after any number of '>' so they
+	 * survive a round-trip, and leaves lines which do not match unchanged
+	 */
+	public void testDeepQuotes() throws Exception {
+		char[] quotes = new char[300];
+		Arrays.fill(quotes, '>');
+		String deep = new String(quotes);
+		String text = deep + "From deep\r\n" + deep + "\r\n" + deep + "Fro\r\n>>From\r\nFrom\r\n>From >From \r\nFrom";
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		MboxWriter writer = new MboxWriter(os);
+		writer.append(createMessage(text));
+		writer.close();
+
+		String mbox = new String(os.toByteArray(), "US-ASCII");
+		assertTrue(mbox.contains("\r\n>" + deep + "From deep\r\n"));
+		assertTrue(mbox.contains("\r\n" + deep + "\r\n" + deep + "Fro\r\n>>From\r\nFrom\r\n>>From >From \r\nFrom\n"));
+
+		MboxReader reader = new MboxReader(null, new ByteArrayInputStream(os.toByteArray()));
+		try {
+			MimeMessage message = reader.readMessage();
+			assertEquals(text + "\n", message.getContent());
+			assertNull(reader.readMessage());
+		} finally {
+			reader.close();
+		}
+	}
+}
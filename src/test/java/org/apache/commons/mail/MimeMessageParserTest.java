@@ -0,0 +1,187 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.activation.DataSource;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.ByteArrayDataSource;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.util.MimeMessageParser;
+import org.apache.commons.mail.util.MimePartInfo;
+import org.apache.commons.mail.util.MimePartVisitor;
+import org.apache.commons.mail.util.MimeMessageUtils;
+
+/*
+ * MimeMessageParserTest parses a multi-part email written to a file
+ */
+public class MimeMessageParserTest extends TestCase {
+
+	private byte[] data;
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = new byte[20000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 13);
+		}
+
+		HtmlEmail email = new HtmlEmail();
+		email.setHostName("localhost");
+		email.setFrom("sender@example.com");
+		email.addTo("recipient@example.com");
+		email.setSubject("parser");
+		email.setTextMsg("plain text");
+		email.setHtmlMsg("<html><body>html text</body></html>");
+		email.attach(new ByteArrayDataSource(data, "application/octet-stream"), "data.bin", "binary data");
+		email.buildMimeMessage();
+
+		file = File.createTempFile("parser", ".eml");
+		FileOutputStream os = new FileOutputStream(file);
+		email.getMimeMessage().writeTo(os);
+		os.close();
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	private byte[] read(InputStream is) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while ((length = is.read(buffer)) != -1) {
+			os.write(buffer, 0, length);
+		}
+		is.close();
+		return os.toByteArray();
+	}
+
+	/*
+	 * asserts that no file descriptor of this process refers to the file;
+	 * the check is skipped where /proc/self/fd does not list them
+	 */
+	private void assertNotOpen(File target) throws Exception {
+		File[] descriptors = new File("/proc/self/fd").listFiles();
+		if (descriptors == null) {
+			System.out.println(getName() + ": /proc/self/fd is not available, skipping the open file check");
+			return;
+		}
+		int count = 0;
+		for (File descriptor : descriptors) {
+			try {
+				if (descriptor.getCanonicalFile().equals(target.getCanonicalFile())) {
+					count++;
+				}
+			} catch (IOException e) {
+				// the descriptor was closed meanwhile
+			}
+		}
+		assertEquals("open descriptors of " + target, 0, count);
+	}
+
+	/*
+	 * testParse() copies the attachments while parsing
+	 */
+	public void testParse() throws Exception {
+		MimeMessage message = MimeMessageUtils.createMimeMessage(null, file);
+		MimeMessageParser parser = new MimeMessageParser(message).parse();
+
+		assertEquals("plain text", parser.getPlainContent());
+		assertTrue(parser.getHtmlContent().contains("html text"));
+		DataSource ds = parser.findAttachmentByName("data.bin");
+		assertTrue(ds instanceof ByteArrayDataSource);
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+	}
+
+	/*
+	 * testParseLazyAttachments() reads the attachments from the file on demand
+	 */
+	public void testParseLazyAttachments() throws Exception {
+		MimeMessage message = MimeMessageUtils.createSharedMimeMessage(null, file);
+		MimeMessageParser parser = new MimeMessageParser(message, true).parse();
+
+		assertEquals("plain text", parser.getPlainContent());
+		DataSource ds = parser.findAttachmentByName("data.bin");
+		assertFalse(ds instanceof ByteArrayDataSource);
+		assertEquals("application/octet-stream", ds.getContentType());
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+		assertNotOpen(file);
+	}
+
+	/*
+	 * testParseLazily() indexes the parts and decodes them when accessed
+	 */
+	public void testParseLazily() throws Exception {
+		MimeMessage message = MimeMessageUtils.createMimeMessage(null, file);
+		MimeMessageParser parser = new MimeMessageParser(message).parseLazily();
+
+		assertTrue(parser.isMultipart());
+		assertTrue(parser.hasPlainContent());
+		assertTrue(parser.hasHtmlContent());
+		assertTrue(parser.hasAttachments());
+
+		assertEquals(3, parser.getPartIndex().size());
+		MimePartInfo info = parser.getPartIndex().get(2);
+		assertEquals("data.bin", info.getFileName());
+		assertEquals("attachment", info.getDisposition());
+		assertTrue(info.getSize() > data.length);
+		assertEquals(1, info.getDepth());
+		assertEquals(2, parser.getPartIndex().get(0).getDepth());
+
+		assertEquals("plain text", parser.getPlainContent());
+		assertTrue(parser.getHtmlContent().contains("html text"));
+		assertTrue(Arrays.equals(data, read(parser.findAttachmentByName("data.bin").getInputStream())));
+	}
+
+	/*
+	 * testPartIndex() only indexes the parts when parsing lazily, once per parse
+	 */
+	public void testPartIndex() throws Exception {
+		MimeMessage message = MimeMessageUtils.createMimeMessage(null, file);
+		MimeMessageParser parser = new MimeMessageParser(message).parse();
+		assertTrue(parser.getPartIndex().isEmpty());
+
+		parser.parseLazily();
+		assertEquals(3, parser.getPartIndex().size());
+		parser.parseLazily();
+		assertEquals(3, parser.getPartIndex().size());
+		assertEquals("data.bin", parser.getPartIndex().get(2).getFileName());
+	}
+
+	/*
+	 * testParseVisitor() streams the decoded parts to a visitor
+	 */
+	public void testParseVisitor() throws Exception {
+		MimeMessage message = MimeMessageUtils.createSharedMimeMessage(null, file);
+		MimeMessageParser parser = new MimeMessageParser(message);
+		final List<String> types = new ArrayList<String>();
+		final ByteArrayOutputStream attachment = new ByteArrayOutputStream();
+
+		parser.parse(new MimePartVisitor() {
+			public void visit(MimePartInfo part, InputStream content) throws Exception {
+				types.add(part.getContentType().split(";")[0]);
+				if ("data.bin".equals(part.getFileName())) {
+					attachment.write(read(content));
+				}
+			}
+		});
+
+		assertEquals(Arrays.asList("text/plain", "text/html", "application/octet-stream"), types);
+		assertTrue(Arrays.equals(data, attachment.toByteArray()));
+		assertNotOpen(file);
+		assertFalse(parser.hasAttachments());
+		assertNull(parser.getPlainContent());
+	}
+}
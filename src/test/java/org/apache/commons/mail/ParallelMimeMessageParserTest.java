@@ -0,0 +1,119 @@
+package org.apache.commons.mail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.mail.util.MimeMessageParser;
+import org.apache.commons.mail.util.ParallelMimeMessageParser;
+
+/*
+ * ParallelMimeMessageParserTest parses a directory of messages in parallel
+ */
+public class ParallelMimeMessageParserTest extends TestCase {
+
+	private File directory;
+	private List<File> files;
+
+	@Override
+	protected void setUp() throws Exception {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName("localhost");
+		email.setFrom("sender@example.com");
+		email.addTo("recipient@example.com");
+		email.setSubject("parallel");
+		email.setMsg("plain text");
+		email.buildMimeMessage();
+
+		directory = File.createTempFile("parser", "");
+		directory.delete();
+		directory.mkdir();
+		files = new ArrayList<File>();
+		for (int i = 0; i < 200; i++) {
+			File file = new File(directory, String.format("message-%03d.eml", i));
+			FileOutputStream os = new FileOutputStream(file);
+			email.getMimeMessage().writeTo(os);
+			os.close();
+			files.add(file);
+		}
+	}
+
+	@Override
+	protected void tearDown() {
+		for (File file : files) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/*
+	 * testParseParallel() passes the results in the order of the file names
+	 * or as they complete
+	 */
+	public void testParseParallel() throws Exception {
+		ParallelMimeMessageParser pipeline = new ParallelMimeMessageParser(null, 4, 3);
+
+		final List<File> ordered = new ArrayList<File>();
+		pipeline.parse(directory, true, new ParallelMimeMessageParser.Handler() {
+			public void handle(ParallelMimeMessageParser.Result result) {
+				assertTrue(result.isSuccess());
+				assertEquals("plain text", result.getParser().getPlainContent());
+				ordered.add(result.getSource());
+			}
+		});
+		assertEquals(files, ordered);
+
+		final List<File> unordered = Collections.synchronizedList(new ArrayList<File>());
+		pipeline.parse(files.iterator(), false, new ParallelMimeMessageParser.Handler() {
+			public void handle(ParallelMimeMessageParser.Result result) {
+				unordered.add(result.getSource());
+			}
+		});
+		assertEquals(files.size(), unordered.size());
+		assertTrue(unordered.containsAll(files));
+	}
+
+	/*
+	 * testOrderedUnderLoad() does not keep the results handled in order,
+	 * only those in flight and possibly the last task of every thread
+	 */
+	public void testOrderedUnderLoad() throws Exception {
+		final int maxInFlight = 4;
+		final List<WeakReference<MimeMessageParser>> handled = new ArrayList<WeakReference<MimeMessageParser>>();
+		final List<File> ordered = new ArrayList<File>();
+		final int threads = 8;
+		final int[] retained = new int[1];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			new ParallelMimeMessageParser(null, executor, maxInFlight).parse(directory, true,
+					new ParallelMimeMessageParser.Handler() {
+						public void handle(ParallelMimeMessageParser.Result result) {
+							ordered.add(result.getSource());
+							handled.add(new WeakReference<MimeMessageParser>(result.getParser()));
+							if (handled.size() == files.size()) {
+								/* the run is still going on, so everything retained is still reachable */
+								System.gc();
+								for (WeakReference<MimeMessageParser> parser : handled) {
+									if (parser.get() != null) {
+										retained[0]++;
+									}
+								}
+							}
+						}
+					});
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(files, ordered);
+		assertTrue("retained " + retained[0], retained[0] <= maxInFlight + threads);
+	}
+}
@@ -0,0 +1,83 @@
+package org.apache.commons.mail;
+
+import junit.framework.TestCase;
+
+/*
+ * SessionCacheTest ensures that emails with identical settings share a
+ * mail session when they are configured with the same SessionCache
+ */
+public class SessionCacheTest extends TestCase {
+
+	private static final String HOST = "smtp.gmail.com";
+	private static final int PORT = 465;
+	private SessionCache cache;
+
+	@Override
+	protected void setUp() {
+		cache = new SessionCache(2);
+	}
+
+	private SimpleEmail createEmail(String userName) {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName(HOST);
+		email.setSmtpPort(PORT);
+		email.setAuthenticator(new DefaultAuthenticator(userName, "password"));
+		email.setSessionCache(cache);
+		return email;
+	}
+
+	/*
+	 * testSharedSession() ensures identical settings lead to the same session
+	 */
+	public void testSharedSession() throws EmailException {
+		assertSame(createEmail("user1").getMailSession(), createEmail("user1").getMailSession());
+		assertEquals(1, cache.size());
+	}
+
+	/*
+	 * testDifferentSettings() ensures different credentials or ports lead to
+	 * different sessions
+	 */
+	public void testDifferentSettings() throws EmailException {
+		SimpleEmail other = createEmail("user1");
+		other.setSmtpPort(25);
+		assertNotSame(createEmail("user1").getMailSession(), createEmail("user2").getMailSession());
+		assertNotSame(createEmail("user1").getMailSession(), other.getMailSession());
+		assertEquals(2, cache.size());
+	}
+
+	/*
+	 * testAuthenticatorSubclass() ensures a subclass of DefaultAuthenticator
+	 * does not share the session of a DefaultAuthenticator with the same fields
+	 */
+	public void testAuthenticatorSubclass() throws EmailException {
+		DefaultAuthenticator subclass = new DefaultAuthenticator("user1", "password") {
+			@Override
+			protected javax.mail.PasswordAuthentication getPasswordAuthentication() {
+				return new javax.mail.PasswordAuthentication("user1", "other");
+			}
+		};
+		DefaultAuthenticator plain = new DefaultAuthenticator("user1", "password");
+		assertFalse(plain.equals(subclass));
+		assertFalse(subclass.equals(plain));
+
+		SimpleEmail other = createEmail("user1");
+		other.setAuthenticator(subclass);
+		assertNotSame(createEmail("user1").getMailSession(), other.getMailSession());
+	}
+
+	/*
+	 * testSettingAfterInit() ensures the session can not be modified once it
+	 * was taken from the cache
+	 */
+	public void testSettingAfterInit() throws EmailException {
+		SimpleEmail email = createEmail("user1");
+		email.getMailSession();
+		try {
+			email.setSocketTimeout(10);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals("The mail session is already initialized", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package org.apache.commons.mail;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.subethamail.smtp.MessageContext;
+import org.subethamail.smtp.MessageHandler;
+import org.subethamail.smtp.MessageHandlerFactory;
+import org.subethamail.smtp.RejectException;
+import org.subethamail.smtp.server.SMTPServer;
+
+/*
+ * SmtpSink is an in-process SMTP server discarding the messages it
+ * receives. It delays the response to every message by a configurable
+ * latency and rejects a configurable share of them with a transient
+ * error. It counts the messages, the connections accepted and the bytes
+ * received and sent on the wire.
+ */
+public class SmtpSink {
+
+	private final SMTPServer server;
+
+	private final Random random = new Random();
+
+	private volatile long latency;
+
+	private volatile double failureRate;
+
+	private final AtomicLong messages = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong connections = new AtomicLong();
+
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	public SmtpSink(int port) {
+		server = new SMTPServer(new MessageHandlerFactory() {
+			public MessageHandler create(MessageContext ctx) {
+				return new SinkHandler();
+			}
+		}) {
+			@Override
+			protected ServerSocket createServerSocket() throws IOException {
+				ServerSocket serverSocket = new CountingServerSocket();
+				serverSocket.bind(getBindAddress() == null ? new InetSocketAddress(getPort())
+						: new InetSocketAddress(getBindAddress(), getPort()), getBacklog());
+				if (getPort() == 0) {
+					setPort(serverSocket.getLocalPort());
+				}
+				return serverSocket;
+			}
+		};
+		server.setPort(port);
+		server.setDisableReceivedHeaders(true);
+	}
+
+	/*
+	 * sets the time in milliseconds the response to each message is delayed
+	 */
+	public void setLatency(long latency) {
+		this.latency = latency;
+	}
+
+	/*
+	 * sets the share of messages rejected, between 0 and 1
+	 */
+	public void setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	/*
+	 * limits the number of concurrent connections, 0 for no limit
+	 */
+	public void setMaxConnections(int maxConnections) {
+		server.setMaxConnections(maxConnections);
+	}
+
+	public int getPort() {
+		return server.getPort();
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop();
+	}
+
+	public long getMessageCount() {
+		return messages.get();
+	}
+
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	public long getConnectionCount() {
+		return connections.get();
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/*
+	 * resets all counters
+	 */
+	public void reset() {
+		messages.set(0);
+		rejected.set(0);
+		connections.set(0);
+		bytesReceived.set(0);
+		bytesSent.set(0);
+	}
+
+	private boolean fail() {
+		double rate = failureRate;
+		if (rate <= 0) {
+			return false;
+		}
+		synchronized (random) {
+			return random.nextDouble() < rate;
+		}
+	}
+
+	private class SinkHandler implements MessageHandler {
+
+		public void from(String from) {
+		}
+
+		public void recipient(String recipient) {
+		}
+
+		public void data(InputStream data) throws IOException {
+			byte[] buffer = new byte[8192];
+			while (data.read(buffer) != -1) {
+				/* discard the message */
+			}
+
+			if (latency > 0) {
+				try {
+					Thread.sleep(latency);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			if (fail()) {
+				rejected.incrementAndGet();
+				throw new RejectException(451, "Requested action aborted: local error in processing");
+			}
+			messages.incrementAndGet();
+		}
+
+		public void done() {
+		}
+	}
+
+	private class CountingServerSocket extends ServerSocket {
+
+		CountingServerSocket() throws IOException {
+			setReuseAddress(true);
+		}
+
+		@Override
+		public Socket accept() throws IOException {
+			Socket socket = new CountingSocket();
+			implAccept(socket);
+			connections.incrementAndGet();
+			return socket;
+		}
+	}
+
+	private class CountingSocket extends Socket {
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			return new FilterInputStream(super.getInputStream()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b != -1) {
+						bytesReceived.incrementAndGet();
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int count = super.read(b, off, len);
+					if (count > 0) {
+						bytesReceived.addAndGet(count);
+					}
+					return count;
+				}
+			};
+		}
+
+		@Override
+		public OutputStream getOutputStream() throws IOException {
+			return new FilterOutputStream(super.getOutputStream()) {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					bytesSent.incrementAndGet();
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					bytesSent.addAndGet(len);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package org.apache.commons.mail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Message;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+import javax.mail.internet.InternetAddress;
+
+import junit.framework.TestCase;
+
+import org.subethamail.wiser.Wiser;
+
+/*
+ * SmtpTraceTest sends emails to an in-process SMTP server and checks the
+ * steps recorded in their traces
+ */
+public class SmtpTraceTest extends TestCase {
+
+	private static final int PORT = 2530;
+
+	private Wiser wiser;
+
+	private final List<SmtpTrace> traces = Collections.synchronizedList(new ArrayList<SmtpTrace>());
+
+	private final SmtpTraceListener listener = new SmtpTraceListener() {
+		public void traced(Email email, SmtpTrace trace) {
+			traces.add(trace);
+		}
+	};
+
+	@Override
+	protected void setUp() {
+		wiser = new Wiser();
+		wiser.setPort(PORT);
+		wiser.start();
+	}
+
+	@Override
+	protected void tearDown() {
+		wiser.stop();
+	}
+
+	private SimpleEmail createEmail(int port) throws EmailException {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName("localhost");
+		email.setSmtpPort(port);
+		email.setFrom("user1@gmail.com");
+		email.addTo("user2@gmail.com");
+		email.addCc("user3@gmail.com");
+		email.setSubject("trace");
+		email.setMsg("trace message");
+		email.setSmtpTraceListener(listener);
+		return email;
+	}
+
+	private static List<String> names(SmtpTrace trace) {
+		List<String> result = new ArrayList<String>();
+		for (SmtpTrace.Step step : trace.getSteps()) {
+			result.add(step.getName());
+		}
+		return result;
+	}
+
+	/*
+	 * testTrace() records every step of sending over a new connection
+	 */
+	public void testTrace() throws Exception {
+		createEmail(PORT).send();
+
+		assertEquals(1, traces.size());
+		SmtpTrace trace = traces.get(0);
+		assertEquals(
+				"[BUILD, PREPARE, DNS, CONNECT, EHLO, MAIL FROM, RCPT TO, RCPT TO, DATA, QUIT]",
+				names(trace).toString());
+		assertEquals("localhost:" + PORT, trace.getServer());
+		assertEquals("delivered", trace.getOutcome());
+		assertNull(trace.getFailure());
+		assertTrue(trace.getTotalNanos() >= trace.getDuration("RCPT TO"));
+
+		SmtpTrace.Step rcpt = trace.getSteps().get(6);
+		assertEquals("user2@gmail.com", rcpt.getDetail());
+		assertEquals(250, rcpt.getReplyCode());
+		assertEquals(250, trace.getSteps().get(8).getReplyCode());
+		assertTrue(trace.toString().contains("RCPT TO user3@gmail.com"));
+	}
+
+	/*
+	 * testPooledTrace() records the connection steps only for the email
+	 * opening the connection
+	 */
+	public void testPooledTrace() throws Exception {
+		TransportPool pool = new TransportPool();
+		try {
+			for (int i = 0; i < 2; i++) {
+				SimpleEmail email = createEmail(PORT);
+				email.setTransportPool(pool);
+				email.send();
+			}
+		} finally {
+			pool.close();
+		}
+
+		assertEquals(2, traces.size());
+		assertEquals("[BUILD, PREPARE, DNS, CONNECT, EHLO, MAIL FROM, RCPT TO, RCPT TO, DATA]",
+				names(traces.get(0)).toString());
+		assertEquals("[BUILD, PREPARE, MAIL FROM, RCPT TO, RCPT TO, DATA]", names(traces.get(1)).toString());
+		/* the server stores a message per recipient */
+		assertEquals(4, wiser.getMessages().size());
+	}
+
+	/*
+	 * testFailedTrace() reports the trace of an email which could not be sent
+	 */
+	public void testFailedTrace() throws Exception {
+		try {
+			createEmail(PORT + 100).send();
+			fail("no server");
+		} catch (EmailException e) {
+			/* expected */
+		}
+
+		assertEquals(1, traces.size());
+		assertNotNull(traces.get(0).getFailure());
+		assertNull(traces.get(0).getOutcome());
+	}
+
+	/*
+	 * testCreateTransport() replaces the configured SMTP transports by
+	 * tracing ones and leaves other providers alone
+	 */
+	public void testCreateTransport() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("mail.transport.protocol", "smtps");
+		Session session = Session.getInstance(properties);
+		javax.mail.Address address = new InternetAddress("user2@gmail.com");
+
+		assertTrue(TracingSMTPTransport.create(session, null) instanceof TracingSMTPTransport);
+		assertTrue(TracingSMTPTransport.create(session, address) instanceof TracingSMTPTransport);
+
+		session.setProvider(new Provider(Provider.Type.TRANSPORT, "smtp", NoopTransport.class.getName(), "test", null));
+		assertTrue(TracingSMTPTransport.create(session, address) instanceof NoopTransport);
+		assertTrue(TracingSMTPTransport.create(session, null) instanceof TracingSMTPTransport);
+	}
+
+	/*
+	 * a transport of another provider
+	 */
+	public static class NoopTransport extends Transport {
+		public NoopTransport(Session session, URLName urlname) {
+			super(session, urlname);
+		}
+
+		@Override
+		public void sendMessage(Message message, javax.mail.Address[] addresses) {
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.apache.commons.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/*
+ * StreamingDataSourceTest reads content on the heap and spilled to a
+ * temporary file
+ */
+public class StreamingDataSourceTest extends TestCase {
+
+	private byte[] createData(int size) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		return data;
+	}
+
+	private byte[] read(InputStream is) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int length;
+		while ((length = is.read(buffer)) != -1) {
+			os.write(buffer, 0, length);
+		}
+		is.close();
+		return os.toByteArray();
+	}
+
+	/*
+	 * testInMemory() keeps content up to the threshold on the heap
+	 */
+	public void testInMemory() throws Exception {
+		byte[] data = createData(20000);
+		StreamingDataSource ds = new StreamingDataSource(new ByteArrayInputStream(data), "image/png", 20000);
+		assertTrue(ds.isInMemory());
+		assertEquals(20000, ds.getSize());
+		assertEquals("image/png", ds.getContentType());
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+		/* every call returns a new stream */
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+		ds.close();
+	}
+
+	/*
+	 * testSpill() writes content exceeding the threshold to a temporary file
+	 */
+	public void testSpill() throws Exception {
+		byte[] data = createData(50000);
+		StreamingDataSource ds = new StreamingDataSource(new ByteArrayInputStream(data), null, 10000);
+		assertFalse(ds.isInMemory());
+		assertEquals(50000, ds.getSize());
+		assertEquals("application/octet-stream", ds.getContentType());
+		assertTrue(Arrays.equals(data, read(ds.getInputStream())));
+		ds.close();
+		try {
+			ds.getInputStream();
+			fail("Should have thrown an exception");
+		} catch (Exception e) {
+			assertTrue(true);
+		}
+	}
+
+	/*
+	 * testEmpty() supports empty content
+	 */
+	public void testEmpty() throws Exception {
+		StreamingDataSource ds = new StreamingDataSource(new ByteArrayInputStream(new byte[0]), "text/plain");
+		assertTrue(ds.isInMemory());
+		assertEquals(-1, ds.getInputStream().read());
+	}
+}
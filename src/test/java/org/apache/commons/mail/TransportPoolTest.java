@@ -0,0 +1,136 @@
+package org.apache.commons.mail;
+
+import java.util.Properties;
+
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import junit.framework.TestCase;
+
+import org.subethamail.wiser.Wiser;
+
+/*
+ * TransportPoolTest sends emails through a TransportPool to an in-process
+ * SMTP server and checks that the connections are reused
+ */
+public class TransportPoolTest extends TestCase {
+
+	private static final int PORT = 2526;
+	private Wiser wiser;
+	private TransportPool pool;
+
+	@Override
+	protected void setUp() {
+		wiser = new Wiser();
+		wiser.setPort(PORT);
+		wiser.start();
+		pool = new TransportPool();
+	}
+
+	private SimpleEmail createEmail(String to) throws EmailException {
+		SimpleEmail email = new SimpleEmail();
+		email.setHostName("localhost");
+		email.setSmtpPort(PORT);
+		email.setFrom("user1@gmail.com");
+		email.addTo(to);
+		email.setSubject("pooled");
+		email.setMsg("pooled message");
+		email.setTransportPool(pool);
+		return email;
+	}
+
+	/*
+	 * testSendPooled() sends several emails and ensures that all of them
+	 * arrive while only one connection stays idle in the pool
+	 */
+	public void testSendPooled() throws EmailException {
+		for (int i = 0; i < 3; i++) {
+			createEmail("user" + i + "@gmail.com").send();
+		}
+		assertEquals(3, wiser.getMessages().size());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	/*
+	 * testBorrowReusesTransport() ensures that a released transport is handed
+	 * out again for a session with the same settings
+	 */
+	public void testBorrowReusesTransport() throws Exception {
+		Session session = createEmail("user1@gmail.com").getMailSession();
+		Transport first = pool.borrow(session);
+		pool.release(first);
+		Session other = createEmail("user2@gmail.com").getMailSession();
+		Transport second = pool.borrow(other);
+		assertSame(first, second);
+		pool.invalidate(second);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	private Session createSession(String userName, String password) {
+		Properties properties = new Properties();
+		properties.setProperty(EmailConstants.MAIL_TRANSPORT_PROTOCOL, EmailConstants.SMTP);
+		properties.setProperty(EmailConstants.MAIL_HOST, "localhost");
+		properties.setProperty(EmailConstants.MAIL_PORT, String.valueOf(PORT));
+		properties.setProperty(EmailConstants.MAIL_SMTP_AUTH, "true");
+		return Session.getInstance(properties, new DefaultAuthenticator(userName, password));
+	}
+
+	/*
+	 * testSessionsWithDifferentAuthenticators() ensures that sessions supplied
+	 * with identical properties but different authenticators never share a
+	 * connection
+	 */
+	public void testSessionsWithDifferentAuthenticators() throws Exception {
+		Session session1 = createSession("user1", "password1");
+		Session session2 = createSession("user2", "password2");
+		SimpleEmail email1 = createEmail("user1@gmail.com");
+		email1.setMailSession(session1);
+		SimpleEmail email2 = createEmail("user2@gmail.com");
+		email2.setMailSession(session2);
+
+		email1.send();
+		email2.send();
+		assertEquals(2, wiser.getMessages().size());
+		assertEquals(2, pool.getIdleCount());
+
+		Transport transport = pool.borrow(session2);
+		pool.release(transport);
+		SimpleEmail email3 = createEmail("user3@gmail.com");
+		email3.setMailSession(session2);
+		email3.send();
+		assertEquals(2, pool.getIdleCount());
+		assertSame(transport, pool.borrow(session2));
+		assertNotSame(transport, pool.borrow(session1));
+	}
+
+	/*
+	 * testAuthenticatorEquality() ensures that authenticators with the same
+	 * credentials are equal so that their connections may be shared
+	 */
+	public void testAuthenticatorEquality() {
+		assertEquals(new DefaultAuthenticator("a", "b"), new DefaultAuthenticator("a", "b"));
+		assertEquals(new DefaultAuthenticator("a", "b").hashCode(), new DefaultAuthenticator("a", "b").hashCode());
+		assertFalse(new DefaultAuthenticator("a", "b").equals(new DefaultAuthenticator("a", "c")));
+	}
+
+	/*
+	 * testClosedPool() ensures that a closed pool refuses to hand out transports
+	 */
+	public void testClosedPool() throws Exception {
+		Session session = createEmail("user1@gmail.com").getMailSession();
+		pool.close();
+		try {
+			pool.borrow(session);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals("The transport pool is already closed", e.getMessage());
+		}
+	}
+
+	@Override
+	protected void tearDown() {
+		pool.close();
+		wiser.stop();
+	}
+}